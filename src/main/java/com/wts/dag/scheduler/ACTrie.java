@@ -15,7 +15,8 @@ import java.util.stream.Collectors;
 public class ACTrie {
 
     private final Node root;                                  //根结点
-    private Boolean failureStatesConstructed = false;   //是否建立了failure表
+    private volatile boolean failureStatesConstructed = false;   //是否建立了failure表，fail 指针全部建好后才置为 true
+    private final List<String> keywords = new ArrayList<>();  //按添加顺序保存的模式串，下标即编译后的关键字 id
 
 
     public ACTrie() {
@@ -63,8 +64,20 @@ public class ACTrie {
             //如果char已经在子节点里，返回这个节点的node；否则建一个node，并将map(char,node)加到子节点里去
             currentState = currentState.insert(character);
         }
-        //在每一个尾节点处，将从root到尾节点的整个string添加到这个叶节点的PattenString里
-        currentState.addPattenString(keyword);
+        //在尾节点处记下关键字 id，重复添加的关键字保留第一次的 id
+        if (currentState.getKeywordId() < 0) {
+            currentState.setKeywordId(keywords.size());
+        }
+        keywords.add(keyword);
+        //已经建好的 fail 表不包含新关键字，下次 parseText 时重建
+        this.failureStatesConstructed = false;
+    }
+
+    /**
+     * 编译为双数组形式的只读自动机，关键字 id 为添加顺序
+     */
+    public CompiledACTrie compile() {
+        return CompiledACTrie.compile(keywords);
     }
 
 
@@ -82,12 +95,10 @@ public class ACTrie {
             //依次从子节点里找char，如果子节点没找到，就到子节点的fail node找，并返回最后找到的node；如果找不到就会返回root
             //这一步同时也在更新currentState，如果找到了就更新currentState为找到的node，没找到currentState就更新为root，相当于又从头开始找
             currentState = currentState.nextState(character);
-            Collection<String> PattenStrings = currentState.PattenString();
-            if (PattenStrings == null || PattenStrings.isEmpty()) {
-                continue;
-            }
-            //如果找到的node的PattenString非空，说明有pattern被匹配到了
-            for (String PattenString : PattenStrings) {
+            //当前节点自身是关键字时先输出自身，再沿 output link 依次输出更短的后缀关键字
+            Node outputNode = currentState.getKeywordId() >= 0 ? currentState : currentState.getOutputLink();
+            for (; outputNode != null; outputNode = outputNode.getOutputLink()) {
+                String PattenString = keywords.get(outputNode.getKeywordId());
                 collectedPattenStrings.add(new Patten_String(position - PattenString.length() + 1, position, PattenString));
             }
         }
@@ -105,9 +116,9 @@ public class ACTrie {
         //然后将root的所有子节点加到queue里面
         for (Node depthOneState : this.root.children()) {
             depthOneState.setFailure(this.root);
+            depthOneState.setOutputLink(null);
             queue.add(depthOneState);
         }
-        this.failureStatesConstructed = true;
 
         while (!queue.isEmpty()) {
             Node parentNode = queue.poll();
@@ -118,33 +129,39 @@ public class ACTrie {
                 Node failNode = parentNode.getFailure().nextState(transition);   //利用父节点的fail node来构建子节点的fail node
                 childNode.setFailure(failNode);
 
-                //每个节点处的PattenString要加上它的fail node处的PattenString
-                //因为能匹配到这个位置的话，那么fail node处的PattenString一定是匹配的pattern
-                childNode.addPattenString(failNode.PattenString());
+                //output link 指向 fail 链上最近的关键字结尾节点：能匹配到这个位置的话，那里的关键字一定也匹配
+                //fail node 比子节点浅，它的 output link 已经建好，每个关键字只在自己的尾节点存一份
+                childNode.setOutputLink(failNode.getKeywordId() >= 0 ? failNode : failNode.getOutputLink());
             }
         }
+        this.failureStatesConstructed = true;
     }
 
 
     /**
-     * 检查是否建立了Fail表(若没建立，则建立)
+     * 检查是否建立了Fail表(若没建立，则建立)；多个线程同时 parseText 时只有一个线程构建，
+     * 其余线程等待构建完成，volatile 写保证读到完整的 fail 指针和 output link
      */
     private void checkForConstructedFailureStates() {
         if (!this.failureStatesConstructed) {
-            constructFailureStates();
+            synchronized (this) {
+                if (!this.failureStatesConstructed) {
+                    constructFailureStates();
+                }
+            }
         }
     }
 
     private static class Node {
         private final Map<Character, Node> map;   //用于放这个Node的所有子节点，储存形式是：Map(char, Node)
-        private final List<String> PattenStrings; //该节点处包含的所有pattern string
+        private int keywordId = -1;         //在该节点结束的关键字 id，没有时为 -1
+        private Node outputLink;            //fail 链上最近的关键字结尾节点
         private Node failure;               //fail指针指向的node
         private Boolean isRoot = false;     //是否为根结点
 
 
         public Node() {
             map = new HashMap<>();
-            PattenStrings = new ArrayList<>();
         }
 
 
@@ -166,13 +183,13 @@ public class ACTrie {
         }
 
 
-        public void addPattenString(String keyword) {
-            PattenStrings.add(keyword);
+        public int getKeywordId() {
+            return keywordId;
         }
 
 
-        public void addPattenString(Collection<String> keywords) {
-            PattenStrings.addAll(keywords);
+        public void setKeywordId(int keywordId) {
+            this.keywordId = keywordId;
         }
 
 
@@ -219,14 +236,17 @@ public class ACTrie {
             failure = node;
         }
 
-        //返回一个Node的所有子节点的键值，也就是这个子节点上储存的char
-        public Set<Character> getTransitions() {
-            return map.keySet();
+        public Node getOutputLink() {
+            return outputLink;
         }
 
+        public void setOutputLink(Node node) {
+            outputLink = node;
+        }
 
-        public Collection<String> PattenString() {
-            return this.PattenStrings == null ? Collections.emptyList() : this.PattenStrings;
+        //返回一个Node的所有子节点的键值，也就是这个子节点上储存的char
+        public Set<Character> getTransitions() {
+            return map.keySet();
         }
     }
 
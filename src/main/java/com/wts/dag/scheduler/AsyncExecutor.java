@@ -0,0 +1,24 @@
+package com.wts.dag.scheduler;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 异步任务契约：executeAsync() 立即返回，任务结束时 future 完成(true 成功、false 或异常为失败)。
+ * 调度器把后继的派发挂在 future 的完成回调上，执行中的异步任务不占用线程池线程。
+ * Task 子类实现该接口即按异步方式调度，未实现的同步 Task 仍按 execute() 执行
+ *
+ * @Package com.wts.dag.scheduler
+ */
+public interface AsyncExecutor {
+
+    CompletableFuture<Boolean> executeAsync();
+
+    /**
+     * 把同步 Task 适配为异步任务：返回的 Task 可以直接加入 Digraph 代替原 Task，调度时 execute() 在 pool 上执行，
+     * 不占用调度器自身的线程池
+     */
+    static Task of(Task task, java.util.concurrent.Executor pool) {
+        MyDAG.requireNoneNull(task, pool);
+        return new PooledTask(task, pool);
+    }
+}
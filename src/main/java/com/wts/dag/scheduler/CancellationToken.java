@@ -0,0 +1,99 @@
+package com.wts.dag.scheduler;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 协作式取消信号。与 WithoutMonitorLockRule 里的普通 boolean 不同，取消原因保存在 AtomicReference(volatile 语义)中，
+ * 其他线程一定能看到；执行中的任务通过 CancellationToken.current() 轮询是否应当提前结束
+ *
+ * @Package com.wts.dag.scheduler
+ */
+public class CancellationToken {
+
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+    private static final CancellationToken NONE = new CancellationToken();
+
+    private final AtomicReference<Throwable> reason = new AtomicReference<>();
+    //同一个 token 可能被多次调度复用，注册和注销都需要是 O(1)
+    private final Set<Runnable> callbacks = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    /**
+     * 当前线程正在执行的任务所属调度的取消信号，不在调度中时返回一个永不取消的实例
+     */
+    public static CancellationToken current() {
+        CancellationToken token = CURRENT.get();
+        return token != null ? token : NONE;
+    }
+
+    static CancellationToken bind(CancellationToken token) {
+        CancellationToken previous = CURRENT.get();
+        CURRENT.set(token);
+        return previous;
+    }
+
+    static void restore(CancellationToken previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    public void cancel() {
+        cancel(new CancellationException());
+    }
+
+    /**
+     * 只有第一次取消生效，返回本次调用是否触发了取消
+     */
+    public boolean cancel(Throwable cause) {
+        MyDAG.requireNotNull(cause);
+        if (this == NONE || !reason.compareAndSet(null, cause)) {
+            return false;
+        }
+        for (Runnable callback : callbacks) {
+            callback.run();
+        }
+        callbacks.clear();
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return reason.get() != null;
+    }
+
+    public Throwable getReason() {
+        return reason.get();
+    }
+
+    public void throwIfCancelled() {
+        Throwable cause = reason.get();
+        if (cause != null) {
+            CancellationException exception = new CancellationException("cancelled");
+            exception.initCause(cause);
+            throw exception;
+        }
+    }
+
+    /**
+     * 注册取消回调；已取消时立即执行。与 cancel 并发注册时回调可能执行两次，需保证幂等
+     */
+    public void onCancel(Runnable callback) {
+        MyDAG.requireNotNull(callback);
+        callbacks.add(callback);
+        if (isCancelled() && callbacks.remove(callback)) {
+            callback.run();
+        }
+    }
+
+    /**
+     * 注销 onCancel 注册的回调，调用方结束后应当注销，避免 token 一直引用它；返回回调是否仍处于注册状态
+     */
+    public boolean removeOnCancel(Runnable callback) {
+        return callbacks.remove(callback);
+    }
+}
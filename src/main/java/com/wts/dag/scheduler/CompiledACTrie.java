@@ -0,0 +1,778 @@
+package com.wts.dag.scheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ACTrie 的冻结形式：双数组(base/check)字典树，fail 指针和输出表都存放在 int 数组中。
+ * 状态 s 读入字符 c 的转移为 t = base[s] + c + 1，当且仅当 check[t] == s 时存在；
+ * 状态 s 结束的关键字 id 为 output[s](没有时为 -1)，outputLink[s] 为 fail 链上最近的有关键字的状态，
+ * 命中从 firstOutput(s) 开始沿 outputLink 枚举，每个关键字只存一份。
+ * 数组以 IntBuffer 持有：compile 得到的实例包装堆内数组，open 得到的实例直接映射 writeTo 写出的文件，
+ * 启动时不需要重建，多个进程映射同一文件时共享同一份只读页缓存。
+ * 所有字段都是 final 且构建后不再修改，实例可以安全地在线程间共享。
+ * 文件格式(小端)：
+ * <pre>
+ * header   int magic, int version, int stateCount, int 保留, int keywordCount, int keywordChars,
+ *          int maxKeywordLength, int 保留
+ * int[stateCount] base, int[stateCount] check, int[stateCount] fail
+ * int[stateCount] output, int[stateCount] outputLink
+ * int[keywordCount + 1] keywordOffsets, char[keywordChars] 关键字字符池
+ * </pre>
+ *
+ * @Package com.wts.dag.scheduler
+ */
+public class CompiledACTrie {
+
+    static final int ROOT = 0;
+    private static final int FREE = -1;
+    private static final int STREAM_BUFFER_SIZE = 8192;
+    //文本长度超过该值时 parseText(text, pool) 才分块并行
+    private static final int PARALLEL_MATCH_THRESHOLD = 1 << 16;
+    private static final int MIN_CHUNK_SIZE = 1 << 14;
+    private static final int MAGIC = 0x41435452;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 32;
+    private static final int[] EMPTY_HITS = new int[0];
+    private static final ThreadLocal<HitBuffer> HIT_BUFFER = ThreadLocal.withInitial(HitBuffer::new);
+
+    private final IntBuffer base;
+    private final IntBuffer check;
+    private final IntBuffer fail;
+    private final IntBuffer output;
+    private final IntBuffer outputLink;
+    //关键字 id 即 compile 时在列表中的下标，第 id 个关键字为 keywordChars[keywordOffsets[id], keywordOffsets[id + 1])
+    private final IntBuffer keywordOffsets;
+    private final CharBuffer keywordChars;
+    private final int stateCount;
+    private final int maxKeywordLength;
+
+    private CompiledACTrie(IntBuffer base, IntBuffer check, IntBuffer fail, IntBuffer output, IntBuffer outputLink,
+                           IntBuffer keywordOffsets, CharBuffer keywordChars, int maxKeywordLength) {
+        this.base = base;
+        this.check = check;
+        this.fail = fail;
+        this.output = output;
+        this.outputLink = outputLink;
+        this.keywordOffsets = keywordOffsets;
+        this.keywordChars = keywordChars;
+        this.stateCount = check.capacity();
+        this.maxKeywordLength = maxKeywordLength;
+    }
+
+    /**
+     * 以 keywords 构建自动机，null、空串以及重复的关键字(保留 id 最小的一个)被忽略
+     */
+    public static CompiledACTrie compile(List<String> keywords) {
+        MyDAG.requireNotNull(keywords);
+        return new Builder(keywords.toArray(new String[0])).build();
+    }
+
+    /**
+     * 只读映射 writeTo 写出的文件，耗时与自动机规模无关
+     */
+    public static CompiledACTrie open(File file) throws IOException {
+        MyDAG.requireNotNull(file);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("automaton file too large: " + channel.size());
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("not an automaton file: " + file);
+            }
+            int stateCount = buffer.getInt(8);
+            int keywordCount = buffer.getInt(16);
+            int keywordChars = buffer.getInt(20);
+            int maxKeywordLength = buffer.getInt(24);
+            int position = HEADER_BYTES;
+            IntBuffer base = slice(buffer, position, stateCount * 4).asIntBuffer();
+            position += stateCount * 4;
+            IntBuffer check = slice(buffer, position, stateCount * 4).asIntBuffer();
+            position += stateCount * 4;
+            IntBuffer fail = slice(buffer, position, stateCount * 4).asIntBuffer();
+            position += stateCount * 4;
+            IntBuffer output = slice(buffer, position, stateCount * 4).asIntBuffer();
+            position += stateCount * 4;
+            IntBuffer outputLink = slice(buffer, position, stateCount * 4).asIntBuffer();
+            position += stateCount * 4;
+            IntBuffer keywordOffsets = slice(buffer, position, (keywordCount + 1) * 4).asIntBuffer();
+            position += (keywordCount + 1) * 4;
+            CharBuffer chars = slice(buffer, position, keywordChars * 2).asCharBuffer();
+            return new CompiledACTrie(base, check, fail, output, outputLink, keywordOffsets, chars,
+                    maxKeywordLength);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(position);
+        duplicate.limit(position + length);
+        return duplicate.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * 写出为 open 可以直接映射的二进制文件；目标文件被原子替换，正在映射旧文件的读者不受影响
+     */
+    public void writeTo(File file) throws IOException {
+        MyDAG.requireNotNull(file);
+        int keywordCount = keywordOffsets.capacity() - 1;
+        long total = HEADER_BYTES + stateCount * 20L
+                + keywordOffsets.capacity() * 4L + keywordChars.capacity() * 2L;
+        if (total > Integer.MAX_VALUE) {
+            throw new IOException("automaton too large: " + total + " bytes");
+        }
+        MappedFiles.write(file, total, buffer -> {
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(stateCount).putInt(0).putInt(keywordCount)
+                    .putInt(keywordChars.capacity()).putInt(maxKeywordLength).putInt(0);
+            for (IntBuffer values : new IntBuffer[]{base, check, fail, output, outputLink, keywordOffsets}) {
+                buffer.asIntBuffer().put(values.duplicate());
+                buffer.position(buffer.position() + values.capacity() * 4);
+            }
+            buffer.asCharBuffer().put(keywordChars.duplicate());
+        });
+    }
+
+    /**
+     * 状态数组的长度，包含未使用的空槽
+     */
+    public int size() {
+        return stateCount;
+    }
+
+    public int keywordCount() {
+        return keywordOffsets.capacity() - 1;
+    }
+
+    /**
+     * 被忽略的 id(null、空串或重复的关键字)返回 null
+     */
+    public String getKeyword(int id) {
+        int begin = keywordOffsets.get(id);
+        int end = keywordOffsets.get(id + 1);
+        if (begin == end) {
+            return null;
+        }
+        char[] chars = new char[end - begin];
+        CharBuffer duplicate = keywordChars.duplicate();
+        duplicate.position(begin);
+        duplicate.get(chars);
+        return new String(chars);
+    }
+
+    public int keywordLength(int id) {
+        return keywordOffsets.get(id + 1) - keywordOffsets.get(id);
+    }
+
+    public int getMaxKeywordLength() {
+        return maxKeywordLength;
+    }
+
+    /**
+     * 字典树上的直接转移，不存在时返回 -1
+     */
+    public int transition(int state, char c) {
+        int next = base.get(state) + c + 1;
+        return next < stateCount && check.get(next) == state ? next : -1;
+    }
+
+    /**
+     * 读入 c 之后的状态：没有直接转移时沿 fail 链回退，最终退到根
+     */
+    public int nextState(int state, char c) {
+        while (true) {
+            int next = transition(state, c);
+            if (next >= 0) {
+                return next;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail.get(state);
+        }
+    }
+
+    public int getFailure(int state) {
+        return fail.get(state);
+    }
+
+    /**
+     * 在 state 结束的关键字 id，没有时返回 -1
+     */
+    public int getOutput(int state) {
+        return output.get(state);
+    }
+
+    /**
+     * fail 链上(不含 state 自身)最近的有关键字的状态，没有时返回 -1
+     */
+    public int getOutputLink(int state) {
+        return outputLink.get(state);
+    }
+
+    /**
+     * 到达 state 时第一个命中所在的状态：state 自身有关键字时为自身，否则为 outputLink；没有命中时返回 -1
+     */
+    public int firstOutput(int state) {
+        return output.get(state) >= 0 ? state : outputLink.get(state);
+    }
+
+    /**
+     * 匹配 text，命中按结束位置排列，每个命中占三个 int：起点、终点(含)、关键字 id
+     */
+    public int[] parseText(CharSequence text) {
+        MyDAG.requireNotNull(text);
+        return scan(text, 0, 0, text.length());
+    }
+
+    /**
+     * 在 pool 上分块并行匹配，结果与 parseText(text) 完全相同。
+     * 每块从 begin - (maxKeywordLength - 1) 开始预热自动机，只收集结束位置落在 [begin, end) 内的命中，
+     * 相邻块的重叠区不会重复输出；按块顺序拼接即为按位置排序的结果
+     */
+    public int[] parseText(CharSequence text, ForkJoinPool pool) {
+        MyDAG.requireNoneNull(text, pool);
+        int length = text.length();
+        if (length < PARALLEL_MATCH_THRESHOLD || pool.getParallelism() <= 1) {
+            return scan(text, 0, 0, length);
+        }
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, length / (pool.getParallelism() * 4));
+        int[][] results = new int[(length + chunkSize - 1) / chunkSize][];
+        pool.invoke(new ChunkTask(text, chunkSize, results, 0, results.length));
+        int total = 0;
+        for (int[] hits : results) {
+            total += hits.length;
+        }
+        int[] merged = new int[total];
+        int offset = 0;
+        for (int[] hits : results) {
+            System.arraycopy(hits, 0, merged, offset, hits.length);
+            offset += hits.length;
+        }
+        return merged;
+    }
+
+    /**
+     * 批量匹配，第 i 个结果为 texts.get(i) 的 parseText 结果。
+     * 实例不可变，可以被任意多个线程同时调用，扫描使用线程私有的缓冲区，每个文本只分配一次结果数组
+     */
+    public int[][] parseTexts(List<? extends CharSequence> texts) {
+        MyDAG.requireNotNull(texts);
+        int[][] results = new int[texts.size()][];
+        for (int i = 0; i < results.length; i++) {
+            CharSequence text = texts.get(i);
+            results[i] = text == null ? EMPTY_HITS : scan(text, 0, 0, text.length());
+        }
+        return results;
+    }
+
+    /**
+     * 从 from 开始以根状态扫描，只收集结束位置在 [begin, end) 内的命中
+     */
+    private int[] scan(CharSequence text, int from, int begin, int end) {
+        HitBuffer buffer = HIT_BUFFER.get();
+        buffer.size = 0;
+        int state = ROOT;
+        for (int position = from; position < end; position++) {
+            state = nextState(state, text.charAt(position));
+            if (position < begin) {
+                continue;
+            }
+            for (int hit = firstOutput(state); hit >= 0; hit = outputLink.get(hit)) {
+                int id = output.get(hit);
+                buffer.add(position - keywordLength(id) + 1, position, id);
+            }
+        }
+        return buffer.size == 0 ? EMPTY_HITS : Arrays.copyOf(buffer.hits, buffer.size);
+    }
+
+    /**
+     * 线程私有的命中缓冲区，只增不减，扫描结束后按实际大小拷贝出结果
+     */
+    private static class HitBuffer {
+        private int[] hits = new int[1024];
+        private int size;
+
+        void add(int start, int end, int id) {
+            if (size + 3 > hits.length) {
+                hits = Arrays.copyOf(hits, hits.length << 1);
+            }
+            hits[size++] = start;
+            hits[size++] = end;
+            hits[size++] = id;
+        }
+    }
+
+    /**
+     * 处理第 [begin, end) 块，块数多于一个时对半拆分
+     */
+    private class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final CharSequence text;
+        private final int chunkSize;
+        private final int[][] results;
+        private final int begin;
+        private final int end;
+
+        ChunkTask(CharSequence text, int chunkSize, int[][] results, int begin, int end) {
+            this.text = text;
+            this.chunkSize = chunkSize;
+            this.results = results;
+            this.begin = begin;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - begin > 1) {
+                int middle = (begin + end) >>> 1;
+                invokeAll(new ChunkTask(text, chunkSize, results, begin, middle),
+                        new ChunkTask(text, chunkSize, results, middle, end));
+                return;
+            }
+            //任何结束于 chunkBegin 之后的命中长度不超过 maxKeywordLength，预热区足以还原顺序扫描时的状态
+            int chunkBegin = begin * chunkSize;
+            int chunkEnd = Math.min(chunkBegin + chunkSize, text.length());
+            results[begin] = scan(text, Math.max(0, chunkBegin - maxKeywordLength + 1), chunkBegin, chunkEnd);
+        }
+    }
+
+    /**
+     * 逐个命中回调 handler，扫描过程不分配对象；handler 返回 false 时停止并返回 false
+     */
+    public boolean match(CharSequence text, MatchHandler handler) {
+        MyDAG.requireNoneNull(text, handler);
+        int state = ROOT;
+        for (int position = 0; position < text.length(); position++) {
+            state = nextState(state, text.charAt(position));
+            if (!emit(state, position, handler)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按 mode 筛选命中；wholeWord 为 true 时只保留两侧都是片段边界的命中，边界与 SupplierCodeFragmentRecognizer 一致。
+     * LEFTMOST_* 模式下起点不超过 position - maxKeywordLength + 1 的命中不会再有更靠左的竞争者，此时才确定输出，
+     * 待定命中最多覆盖两个关键字长度的窗口
+     */
+    public boolean match(CharSequence text, MatchMode mode, boolean wholeWord, MatchHandler handler) {
+        MyDAG.requireNoneNull(text, mode, handler);
+        if (mode == MatchMode.ALL && !wholeWord) {
+            return match(text, handler);
+        }
+        boolean leftmost = mode == MatchMode.LEFTMOST_LONGEST || mode == MatchMode.LEFTMOST_FIRST;
+        PendingHits pending = new PendingHits(mode == MatchMode.LEFTMOST_LONGEST);
+        int state = ROOT;
+        for (int position = 0; position < text.length(); position++) {
+            state = nextState(state, text.charAt(position));
+            for (int hit = firstOutput(state); hit >= 0; hit = outputLink.get(hit)) {
+                int id = output.get(hit);
+                int start = position - keywordLength(id) + 1;
+                if (start <= pending.lastEnd || (wholeWord && !isWholeWord(text, start, position))) {
+                    continue;
+                }
+                if (leftmost) {
+                    pending.add(start, position, id);
+                    continue;
+                }
+                if (!handler.onMatch(start, position, id)) {
+                    return false;
+                }
+                if (mode == MatchMode.NON_OVERLAPPING) {
+                    //输出顺序由长到短，第一个可用的就是最长的
+                    pending.lastEnd = position;
+                    break;
+                }
+            }
+            if (leftmost && !pending.resolve(position - maxKeywordLength + 1, handler)) {
+                return false;
+            }
+        }
+        return !leftmost || pending.resolve(Integer.MAX_VALUE, handler);
+    }
+
+    /**
+     * 按 mode 筛选后的命中，格式与 parseText(text) 相同
+     */
+    public int[] parseText(CharSequence text, MatchMode mode, boolean wholeWord) {
+        HitBuffer buffer = HIT_BUFFER.get();
+        buffer.size = 0;
+        match(text, mode, wholeWord, (start, end, id) -> {
+            buffer.add((int) start, (int) end, id);
+            return true;
+        });
+        return buffer.size == 0 ? EMPTY_HITS : Arrays.copyOf(buffer.hits, buffer.size);
+    }
+
+    private static boolean isWholeWord(CharSequence text, int start, int end) {
+        return (start == 0 || !SupplierCodeFragmentRecognizer.isFragmentChar(text.charAt(start - 1)))
+                && (end + 1 >= text.length() || !SupplierCodeFragmentRecognizer.isFragmentChar(text.charAt(end + 1)));
+    }
+
+    /**
+     * LEFTMOST_* 模式下尚未确定的命中，每个命中占三个 int；lastEnd 为最后输出的命中终点
+     */
+    private static class PendingHits {
+        private final boolean longest;
+        private int[] hits = new int[48];
+        private int size;
+        private int lastEnd = -1;
+
+        PendingHits(boolean longest) {
+            this.longest = longest;
+        }
+
+        void add(int start, int end, int id) {
+            if (size + 3 > hits.length) {
+                hits = Arrays.copyOf(hits, hits.length << 1);
+            }
+            hits[size++] = start;
+            hits[size++] = end;
+            hits[size++] = id;
+        }
+
+        /**
+         * 依次输出起点不超过 bound 的最左命中，并丢弃与之重叠的待定命中；handler 要求停止时返回 false
+         */
+        boolean resolve(int bound, MatchHandler handler) {
+            while (size > 0) {
+                int best = 0;
+                for (int i = 3; i < size; i += 3) {
+                    if (hits[i] < hits[best] || hits[i] == hits[best]
+                            && (longest ? hits[i + 1] > hits[best + 1] : hits[i + 2] < hits[best + 2])) {
+                        best = i;
+                    }
+                }
+                int start = hits[best];
+                int end = hits[best + 1];
+                int id = hits[best + 2];
+                if (start > bound) {
+                    return true;
+                }
+                lastEnd = end;
+                int kept = 0;
+                for (int i = 0; i < size; i += 3) {
+                    if (hits[i] > end) {
+                        hits[kept++] = hits[i];
+                        hits[kept++] = hits[i + 1];
+                        hits[kept++] = hits[i + 2];
+                    }
+                }
+                size = kept;
+                if (!handler.onMatch(start, end, id)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    public boolean match(char[] text, int offset, int length, MatchHandler handler) {
+        return newStreamMatcher(handler).feed(text, offset, length);
+    }
+
+    /**
+     * 分块读取 reader 做流式匹配，内存占用与输入长度无关
+     */
+    public boolean match(Reader reader, MatchHandler handler) throws IOException {
+        MyDAG.requireNotNull(reader);
+        StreamMatcher matcher = newStreamMatcher(handler);
+        char[] buffer = new char[STREAM_BUFFER_SIZE];
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+            if (!matcher.feed(buffer, 0, read)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public StreamMatcher newStreamMatcher(MatchHandler handler) {
+        MyDAG.requireNotNull(handler);
+        return new StreamMatcher(handler);
+    }
+
+    private boolean emit(int state, long position, MatchHandler handler) {
+        for (int hit = firstOutput(state); hit >= 0; hit = outputLink.get(hit)) {
+            int id = output.get(hit);
+            if (!handler.onMatch(position - keywordLength(id) + 1, position, id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 流式匹配：输入可以分成任意多块依次喂入，自动机状态和位置在块之间延续，跨块的关键字同样能命中。
+     * 非线程安全，每个输入流使用一个实例
+     */
+    public class StreamMatcher {
+        private final MatchHandler handler;
+        private int state = ROOT;
+        private long position;
+
+        private StreamMatcher(MatchHandler handler) {
+            this.handler = handler;
+        }
+
+        public boolean feed(char[] chunk, int offset, int length) {
+            int state = this.state;
+            long position = this.position;
+            try {
+                for (int i = offset, end = offset + length; i < end; i++, position++) {
+                    state = nextState(state, chunk[i]);
+                    if (!emit(state, position, handler)) {
+                        position++;
+                        return false;
+                    }
+                }
+                return true;
+            } finally {
+                this.state = state;
+                this.position = position;
+            }
+        }
+
+        /**
+         * 消费 chunk 中剩余的全部字符
+         */
+        public boolean feed(CharBuffer chunk) {
+            if (chunk.hasArray()) {
+                int length = chunk.remaining();
+                int offset = chunk.arrayOffset() + chunk.position();
+                chunk.position(chunk.limit());
+                return feed(chunk.array(), offset, length);
+            }
+            while (chunk.hasRemaining()) {
+                state = nextState(state, chunk.get());
+                if (!emit(state, position++, handler)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 已消费的字符数
+         */
+        public long getPosition() {
+            return position;
+        }
+
+        public void reset() {
+            state = ROOT;
+            position = 0;
+        }
+    }
+
+    /**
+     * 按字典序排序后逐层(BFS)放置：每个状态的所有子节点一起寻找一个 base，使 base + c + 1 全部空闲
+     */
+    private static class Builder {
+        private final String[] keywords;
+        private int[] base = new int[1024];
+        private int[] check = new int[1024];
+        private int[] fail = new int[1024];
+        private int[] own = new int[1024];
+        private int nextCheckPos = 1;
+        private int used = 1;
+        private int maxKeywordLength;
+
+        Builder(String[] keywords) {
+            this.keywords = keywords;
+            Arrays.fill(check, FREE);
+            Arrays.fill(own, -1);
+            check[ROOT] = ROOT;
+        }
+
+        CompiledACTrie build() {
+            int[] sorted = sortedDistinctIds();
+            int totalChars = 0;
+            for (int id : sorted) {
+                totalChars += keywords[id].length();
+                maxKeywordLength = Math.max(maxKeywordLength, keywords[id].length());
+            }
+            //队列中每个状态占四个 int：状态、深度、[lo, hi) 为共享该前缀的关键字在 sorted 中的区间
+            int[] queue = new int[(totalChars + 1) * 4];
+            int tail = 0;
+            queue[tail++] = ROOT;
+            queue[tail++] = 0;
+            queue[tail++] = 0;
+            queue[tail++] = sorted.length;
+            char[] chars = new char[Math.max(1, sorted.length)];
+            int[] bounds = new int[Math.max(1, sorted.length) + 1];
+            for (int head = 0; head < tail; head += 4) {
+                int state = queue[head];
+                int depth = queue[head + 1];
+                int lo = queue[head + 2];
+                int hi = queue[head + 3];
+                //排序后恰好在此结束的关键字位于区间最前面，去重后至多一个
+                if (lo < hi && keywords[sorted[lo]].length() == depth) {
+                    own[state] = sorted[lo++];
+                }
+                int childCount = 0;
+                for (int i = lo; i < hi; i++) {
+                    char c = keywords[sorted[i]].charAt(depth);
+                    if (childCount == 0 || chars[childCount - 1] != c) {
+                        chars[childCount] = c;
+                        bounds[childCount++] = i;
+                    }
+                }
+                bounds[childCount] = hi;
+                if (childCount == 0) {
+                    continue;
+                }
+                int begin = findBase(chars, childCount);
+                base[state] = begin;
+                for (int i = 0; i < childCount; i++) {
+                    check[begin + chars[i] + 1] = state;
+                }
+                for (int i = 0; i < childCount; i++) {
+                    int child = begin + chars[i] + 1;
+                    //fail[state] 深度更小，其子节点已经放置完毕
+                    fail[child] = state == ROOT ? ROOT : nextState(fail[state], chars[i]);
+                    queue[tail++] = child;
+                    queue[tail++] = depth + 1;
+                    queue[tail++] = bounds[i];
+                    queue[tail++] = bounds[i + 1];
+                }
+            }
+            return buildOutputs(queue, tail);
+        }
+
+        private int[] sortedDistinctIds() {
+            Integer[] ids = new Integer[keywords.length];
+            int count = 0;
+            for (int id = 0; id < keywords.length; id++) {
+                if (keywords[id] != null && !keywords[id].isEmpty()) {
+                    ids[count++] = id;
+                }
+            }
+            Arrays.sort(ids, 0, count, (a, b) -> {
+                int compare = keywords[a].compareTo(keywords[b]);
+                return compare != 0 ? compare : Integer.compare(a, b);
+            });
+            int[] sorted = new int[count];
+            int size = 0;
+            for (int i = 0; i < count; i++) {
+                if (size == 0 || !keywords[ids[i]].equals(keywords[sorted[size - 1]])) {
+                    sorted[size++] = ids[i];
+                }
+            }
+            return Arrays.copyOf(sorted, size);
+        }
+
+        /**
+         * 从 nextCheckPos 开始找第一个让所有子节点槽位都空闲的 base；扫过的区间足够稠密时推进 nextCheckPos
+         */
+        private int findBase(char[] chars, int childCount) {
+            int position = Math.max(nextCheckPos, chars[0] + 1) - 1;
+            int occupied = 0;
+            boolean first = true;
+            while (true) {
+                position++;
+                ensureCapacity(position + 1);
+                if (check[position] != FREE) {
+                    occupied++;
+                    continue;
+                } else if (first) {
+                    nextCheckPos = position;
+                    first = false;
+                }
+                int begin = position - chars[0] - 1;
+                ensureCapacity(begin + chars[childCount - 1] + 2);
+                boolean fits = true;
+                for (int i = 1; i < childCount; i++) {
+                    if (check[begin + chars[i] + 1] != FREE) {
+                        fits = false;
+                        break;
+                    }
+                }
+                if (fits) {
+                    if ((double) occupied / (position - nextCheckPos + 1) >= 0.95) {
+                        nextCheckPos = position;
+                    }
+                    used = Math.max(used, begin + chars[childCount - 1] + 2);
+                    return begin;
+                }
+            }
+        }
+
+        private int nextState(int state, char c) {
+            while (true) {
+                int next = base[state] + c + 1;
+                if (next < check.length && check[next] == state) {
+                    return next;
+                }
+                if (state == ROOT) {
+                    return ROOT;
+                }
+                state = fail[state];
+            }
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= check.length) {
+                return;
+            }
+            int length = Math.max(capacity, check.length + (check.length >> 1));
+            int oldLength = check.length;
+            base = Arrays.copyOf(base, length);
+            check = Arrays.copyOf(check, length);
+            fail = Arrays.copyOf(fail, length);
+            own = Arrays.copyOf(own, length);
+            Arrays.fill(check, oldLength, length, FREE);
+            Arrays.fill(own, oldLength, length, -1);
+        }
+
+        /**
+         * 按 BFS 顺序建立 output link：指向 fail 状态自身或 fail 状态的 output link，fail 状态总是先处理
+         */
+        private CompiledACTrie buildOutputs(int[] queue, int tail) {
+            int[] outputLink = new int[used];
+            Arrays.fill(outputLink, -1);
+            for (int head = 4; head < tail; head += 4) {
+                int state = queue[head];
+                int failState = fail[state];
+                outputLink[state] = own[failState] >= 0 ? failState : outputLink[failState];
+            }
+            //只保留自动机中的关键字，被忽略的 id 长度为 0
+            boolean[] kept = new boolean[keywords.length];
+            for (int state = 0; state < used; state++) {
+                if (own[state] >= 0) {
+                    kept[own[state]] = true;
+                }
+            }
+            int[] keywordOffsets = new int[keywords.length + 1];
+            for (int id = 0; id < keywords.length; id++) {
+                keywordOffsets[id + 1] = keywordOffsets[id] + (kept[id] ? keywords[id].length() : 0);
+            }
+            char[] keywordChars = new char[keywordOffsets[keywords.length]];
+            for (int id = 0; id < keywords.length; id++) {
+                if (kept[id]) {
+                    keywords[id].getChars(0, keywords[id].length(), keywordChars, keywordOffsets[id]);
+                }
+            }
+            return new CompiledACTrie(IntBuffer.wrap(Arrays.copyOf(base, used)), IntBuffer.wrap(Arrays.copyOf(check, used)),
+                    IntBuffer.wrap(Arrays.copyOf(fail, used)), IntBuffer.wrap(Arrays.copyOf(own, used)), IntBuffer.wrap(outputLink),
+                    IntBuffer.wrap(keywordOffsets), CharBuffer.wrap(keywordChars), maxKeywordLength);
+        }
+    }
+}
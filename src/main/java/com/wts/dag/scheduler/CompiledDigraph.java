@@ -0,0 +1,158 @@
+package com.wts.dag.scheduler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Digraph 的冻结形式：任务按稠密 int 编号，前驱/后继以 CSR(compressed sparse row) int[] 存储，
+ * 每条边只占两个 int，遍历时顺序访问数组
+ *
+ * @Package com.wts.dag.scheduler
+ */
+public class CompiledDigraph {
+
+    private final Task[] tasks;
+    //第 i 个任务的后继为 nexts[nextOffsets[i]] ~ nexts[nextOffsets[i + 1] - 1]
+    private final int[] nextOffsets;
+    private final int[] nexts;
+    //第 i 个任务的前驱为 prevs[prevOffsets[i]] ~ prevs[prevOffsets[i + 1] - 1]
+    private final int[] prevOffsets;
+    private final int[] prevs;
+
+    public CompiledDigraph(Task[] tasks, int[] nextOffsets, int[] nexts, int[] prevOffsets, int[] prevs) {
+        MyDAG.requireNoneNull(tasks, nextOffsets, nexts, prevOffsets, prevs);
+        if (nextOffsets.length != tasks.length + 1 || prevOffsets.length != tasks.length + 1
+                || nexts.length != prevs.length) {
+            throw new IllegalArgumentException();
+        }
+        this.tasks = tasks;
+        this.nextOffsets = nextOffsets;
+        this.nexts = nexts;
+        this.prevOffsets = prevOffsets;
+        this.prevs = prevs;
+    }
+
+    public static CompiledDigraph compile(Digraph digraph) {
+        Set<Task> taskSet = digraph.getTasks();
+        Task[] tasks = taskSet.toArray(new Task[0]);
+        Map<Task, Integer> indexMap = new HashMap<Task, Integer>(tasks.length * 2);
+        for (int i = 0; i < tasks.length; i++) {
+            indexMap.put(tasks[i], i);
+        }
+        int[] nextOffsets = new int[tasks.length + 1];
+        int[] prevOffsets = new int[tasks.length + 1];
+        int edgeCount = 0;
+        for (Map.Entry<Task, Set<Task>> entry : digraph.getMap().entrySet()) {
+            Integer index = indexMap.get(entry.getKey());
+            if (index == null) {
+                continue;
+            }
+            for (Task prev : entry.getValue()) {
+                Integer prevIndex = indexMap.get(prev);
+                if (prevIndex == null) {
+                    continue;
+                }
+                prevOffsets[index + 1]++;
+                nextOffsets[prevIndex + 1]++;
+                edgeCount++;
+            }
+        }
+        for (int i = 0; i < tasks.length; i++) {
+            nextOffsets[i + 1] += nextOffsets[i];
+            prevOffsets[i + 1] += prevOffsets[i];
+        }
+        int[] nexts = new int[edgeCount];
+        int[] prevs = new int[edgeCount];
+        int[] nextCursor = new int[tasks.length];
+        int[] prevCursor = new int[tasks.length];
+        for (Map.Entry<Task, Set<Task>> entry : digraph.getMap().entrySet()) {
+            Integer index = indexMap.get(entry.getKey());
+            if (index == null) {
+                continue;
+            }
+            for (Task prev : entry.getValue()) {
+                Integer prevIndex = indexMap.get(prev);
+                if (prevIndex == null) {
+                    continue;
+                }
+                prevs[prevOffsets[index] + prevCursor[index]++] = prevIndex;
+                nexts[nextOffsets[prevIndex] + nextCursor[prevIndex]++] = index;
+            }
+        }
+        return new CompiledDigraph(tasks, nextOffsets, nexts, prevOffsets, prevs);
+    }
+
+    public int size() {
+        return tasks.length;
+    }
+
+    public int edgeCount() {
+        return nexts.length;
+    }
+
+    public Task getTask(int index) {
+        return tasks[index];
+    }
+
+    public int nextBegin(int index) {
+        return nextOffsets[index];
+    }
+
+    public int nextEnd(int index) {
+        return nextOffsets[index + 1];
+    }
+
+    public int next(int offset) {
+        return nexts[offset];
+    }
+
+    public int prevBegin(int index) {
+        return prevOffsets[index];
+    }
+
+    public int prevEnd(int index) {
+        return prevOffsets[index + 1];
+    }
+
+    public int prev(int offset) {
+        return prevs[offset];
+    }
+
+    public int inDegree(int index) {
+        return prevOffsets[index + 1] - prevOffsets[index];
+    }
+
+    public int outDegree(int index) {
+        return nextOffsets[index + 1] - nextOffsets[index];
+    }
+
+    /**
+     * Kahn 拓扑排序，返回任务编号序列；存在环时抛出 IllegalStateException
+     */
+    public int[] topologicalSort() {
+        int size = tasks.length;
+        int[] degrees = new int[size];
+        int[] queue = new int[size];
+        int tail = 0;
+        for (int i = 0; i < size; i++) {
+            degrees[i] = inDegree(i);
+            if (degrees[i] == 0) {
+                queue[tail++] = i;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int index = queue[head];
+            for (int offset = nextOffsets[index], end = nextOffsets[index + 1]; offset < end; offset++) {
+                int next = nexts[offset];
+                if (--degrees[next] == 0) {
+                    queue[tail++] = next;
+                }
+            }
+        }
+        if (tail != size) {
+            throw new IllegalStateException("cycle detected among " + (size - tail) + " tasks");
+        }
+        return queue;
+    }
+}
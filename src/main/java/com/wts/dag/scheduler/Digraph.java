@@ -1,5 +1,6 @@
 package com.wts.dag.scheduler;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -7,26 +8,52 @@ import java.util.Set;
 
 public class Digraph {
     private Set<Task> tasks;
+    //task -> 前驱集合
     private Map<Task, Set<Task>> map;
+    //task -> 后继集合，与 map 互为反向索引，删除时只需访问相邻节点
+    private Map<Task, Set<Task>> nextMap;
+    //为 null 时不做在线环检测，环在 compile().topologicalSort() 时才报出
+    private final DynamicTopologicalOrder<Task> order;
 
     public Digraph() {
+        this(false);
+    }
+
+    /**
+     * @param cycleDetection 是否在 addEdge 时在线检测环。在线检测的加边代价与受影响区间大小相关，
+     *                       一次性建图时应关闭，由调度前的拓扑排序统一检测；运行中持续变更的图才需要打开
+     */
+    public Digraph(boolean cycleDetection) {
         this.tasks = new HashSet<Task>();
         this.map = new HashMap<Task, Set<Task>>();
+        this.nextMap = new HashMap<Task, Set<Task>>();
+        this.order = cycleDetection ? new DynamicTopologicalOrder<Task>(this::nexts, this::prevs) : null;
+    }
+
+    public boolean isCycleDetection() {
+        return order != null;
     }
 
+    /**
+     * 添加依赖 prev -> task；开启在线环检测时，会形成环则抛出 IllegalArgumentException
+     */
     public void addEdge(Task task, Task prev) {
         if (!tasks.contains(task) || !tasks.contains(prev)) {
             throw new IllegalArgumentException();
         }
         Set<Task> prevs = map.get(task);
+        if (prevs != null && prevs.contains(prev)) {
+            throw new IllegalArgumentException();
+        }
+        if (order != null && !order.addEdge(prev, task)) {
+            throw new IllegalArgumentException("edge would create a cycle");
+        }
         if (prevs == null) {
             prevs = new HashSet<Task>();
             map.put(task, prevs);
         }
-        if (prevs.contains(prev)) {
-            throw new IllegalArgumentException();
-        }
         prevs.add(prev);
+        nextMap.computeIfAbsent(prev, k -> new HashSet<Task>()).add(task);
     }
 
     public void addTask(Task task) {
@@ -34,20 +61,74 @@ public class Digraph {
             throw new IllegalArgumentException();
         }
         tasks.add(task);
+        if (order != null) {
+            order.add(task);
+        }
     }
 
-    public void remove(Task task) {
-        if (!tasks.contains(task)) {
+    public void removeEdge(Task task, Task prev) {
+        Set<Task> prevs = map.get(task);
+        if (prevs == null || !prevs.remove(prev)) {
             return;
         }
-        if (map.containsKey(task)) {
+        if (prevs.isEmpty()) {
             map.remove(task);
         }
-        for (Set<Task> set : map.values()) {
-            if (set.contains(task)) {
-                set.remove(task);
+        Set<Task> nexts = nextMap.get(prev);
+        nexts.remove(task);
+        if (nexts.isEmpty()) {
+            nextMap.remove(prev);
+        }
+    }
+
+    /**
+     * 删除任务及其相关的边，只访问该任务的相邻节点
+     */
+    public void remove(Task task) {
+        if (!tasks.remove(task)) {
+            return;
+        }
+        Set<Task> prevs = map.remove(task);
+        if (prevs != null) {
+            for (Task prev : prevs) {
+                Set<Task> nexts = nextMap.get(prev);
+                nexts.remove(task);
+                if (nexts.isEmpty()) {
+                    nextMap.remove(prev);
+                }
             }
         }
+        Set<Task> nexts = nextMap.remove(task);
+        if (nexts != null) {
+            for (Task next : nexts) {
+                Set<Task> nextPrevs = map.get(next);
+                nextPrevs.remove(task);
+                if (nextPrevs.isEmpty()) {
+                    map.remove(next);
+                }
+            }
+        }
+        if (order != null) {
+            order.remove(task);
+        }
+    }
+
+    public boolean contains(Task task) {
+        return tasks.contains(task);
+    }
+
+    public Set<Task> getPrevs(Task task) {
+        Set<Task> prevs = map.get(task);
+        return prevs == null ? Collections.<Task>emptySet() : Collections.unmodifiableSet(prevs);
+    }
+
+    public Set<Task> getNexts(Task task) {
+        Set<Task> nexts = nextMap.get(task);
+        return nexts == null ? Collections.<Task>emptySet() : Collections.unmodifiableSet(nexts);
+    }
+
+    public CompiledDigraph compile() {
+        return CompiledDigraph.compile(this);
     }
 
     public Set<Task> getTasks() {
@@ -56,6 +137,7 @@ public class Digraph {
 
     public void setTasks(Set<Task> tasks) {
         this.tasks = tasks;
+        rebuildIndex();
     }
 
     public Map<Task, Set<Task>> getMap() {
@@ -64,5 +146,36 @@ public class Digraph {
 
     public void setMap(Map<Task, Set<Task>> map) {
         this.map = map;
+        rebuildIndex();
+    }
+
+    /**
+     * 外部整体替换 tasks/map 后重建后继索引，开启在线环检测时同时重建拓扑序
+     */
+    private void rebuildIndex() {
+        nextMap = new HashMap<Task, Set<Task>>();
+        for (Map.Entry<Task, Set<Task>> entry : map.entrySet()) {
+            for (Task prev : entry.getValue()) {
+                nextMap.computeIfAbsent(prev, k -> new HashSet<Task>()).add(entry.getKey());
+            }
+        }
+        if (order == null) {
+            return;
+        }
+        order.clear();
+        CompiledDigraph graph = compile();
+        for (int index : graph.topologicalSort()) {
+            order.add(graph.getTask(index));
+        }
+    }
+
+    private Iterable<Task> nexts(Task task) {
+        Set<Task> nexts = nextMap.get(task);
+        return nexts == null ? Collections.<Task>emptySet() : nexts;
+    }
+
+    private Iterable<Task> prevs(Task task) {
+        Set<Task> prevs = map.get(task);
+        return prevs == null ? Collections.<Task>emptySet() : prevs;
     }
 }
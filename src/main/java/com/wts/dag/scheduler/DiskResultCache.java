@@ -0,0 +1,108 @@
+package com.wts.dag.scheduler;
+
+import cn.hutool.crypto.digest.DigestUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 磁盘缓存：每个 key 对应目录下一个以 key 的 sha256 命名的文件(内容为 key 本身)，
+ * 命中时更新文件修改时间；目录总大小超过 maxBytes 时按修改时间从旧到新淘汰到 maxBytes 的 90%
+ *
+ * @Package com.wts.dag.scheduler
+ */
+public class DiskResultCache implements ResultCache {
+
+    private final File directory;
+    private final long maxBytes;
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    public DiskResultCache(File directory, long maxBytes) {
+        MyDAG.requireNotNull(directory);
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException();
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("cannot create " + directory);
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                usedBytes.addAndGet(file.length());
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(String key) {
+        File file = fileOf(key);
+        if (!file.isFile()) {
+            return false;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    @Override
+    public void put(String key) {
+        File file = fileOf(key);
+        if (file.isFile()) {
+            file.setLastModified(System.currentTimeMillis());
+            return;
+        }
+        byte[] content = key.getBytes(StandardCharsets.UTF_8);
+        //并发 put 同一个 key 时只有真正创建了文件的一方计入占用
+        try {
+            Files.write(file.toPath(), content, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        } catch (FileAlreadyExistsException e) {
+            return;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (usedBytes.addAndGet(content.length) > maxBytes) {
+            evict();
+        }
+    }
+
+    private synchronized void evict() {
+        if (usedBytes.get() <= maxBytes) {
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        //修改时间会被并发的 contains/put 更新，排序前只读一次，否则比较结果前后不一致，TimSort 会抛异常
+        long[] modified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            modified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(modified[a], modified[b]));
+        long target = maxBytes / 10 * 9;
+        for (int index : order) {
+            if (usedBytes.get() <= target) {
+                break;
+            }
+            File file = files[index];
+            long length = file.length();
+            if (file.delete()) {
+                usedBytes.addAndGet(-length);
+            }
+        }
+    }
+
+    private File fileOf(String key) {
+        return new File(directory, DigestUtil.sha256Hex(key));
+    }
+}
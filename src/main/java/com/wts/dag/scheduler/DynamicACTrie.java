@@ -0,0 +1,269 @@
+package com.wts.dag.scheduler;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 支持增删关键字的 AC 自动机，写时复制：
+ * 当前版本由一个基础自动机、一个只含新增关键字的增量自动机和基础自动机中已删除的 id 集合组成，
+ * 增删关键字只重建很小的增量自动机并发布新版本，耗时在毫秒级；增量关键字数达到 mergeThreshold 时在后台合并为新的基础自动机。
+ * 匹配读取 volatile 的当前版本，不加锁，更新期间继续使用旧版本。
+ * 关键字 id 按首次添加的顺序分配，删除后再添加会得到新 id；同一结束位置先输出基础自动机的命中
+ *
+ * @Package com.wts.dag.scheduler
+ */
+public class DynamicACTrie {
+
+    private static final int DEFAULT_MERGE_THRESHOLD = 1024;
+
+    private final int mergeThreshold;
+    private final Executor mergeExecutor;
+    private final Object updateLock = new Object();
+    private final Object mergeLock = new Object();
+    private volatile Version current;
+
+    //以下字段只在 updateLock 内访问
+    private String[] keywords;
+    private int keywordCount;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private final BitSet deltaIds = new BitSet();
+    private boolean mergeScheduled;
+
+    public DynamicACTrie(Collection<String> keywords) {
+        this(keywords, DEFAULT_MERGE_THRESHOLD, ForkJoinPool.commonPool());
+    }
+
+    public DynamicACTrie(Collection<String> keywords, int mergeThreshold, Executor mergeExecutor) {
+        MyDAG.requireNoneNull(keywords, mergeExecutor);
+        if (mergeThreshold <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.mergeThreshold = mergeThreshold;
+        this.mergeExecutor = mergeExecutor;
+        this.keywords = new String[Math.max(16, keywords.size())];
+        synchronized (updateLock) {
+            for (String keyword : keywords) {
+                if (keyword != null && !keyword.isEmpty() && !ids.containsKey(keyword)) {
+                    ids.put(keyword, keywordCount);
+                    live.set(keywordCount);
+                    this.keywords[keywordCount++] = keyword;
+                }
+            }
+            CompiledACTrie base = CompiledACTrie.compile(Arrays.asList(this.keywords).subList(0, keywordCount));
+            this.current = new Version(base, null, null, new BitSet(), this.keywords, keywordCount);
+        }
+    }
+
+    /**
+     * 添加关键字，返回其 id；已存在时直接返回原 id
+     */
+    public int addKeyword(String keyword) {
+        if (keyword == null || keyword.isEmpty()) {
+            throw new IllegalArgumentException("empty keyword");
+        }
+        int id;
+        boolean scheduleMerge = false;
+        synchronized (updateLock) {
+            Integer existing = ids.get(keyword);
+            if (existing != null) {
+                return existing;
+            }
+            if (keywordCount == keywords.length) {
+                //旧数组仍被已发布的版本引用，扩容时复制而不是原地修改
+                keywords = Arrays.copyOf(keywords, keywords.length << 1);
+            }
+            id = keywordCount;
+            keywords[keywordCount++] = keyword;
+            ids.put(keyword, id);
+            live.set(id);
+            deltaIds.set(id);
+            publish(current.base, current.removed);
+            if (deltaIds.cardinality() >= mergeThreshold && !mergeScheduled) {
+                mergeScheduled = true;
+                scheduleMerge = true;
+            }
+        }
+        //merge 先取 mergeLock 再取 updateLock，在 updateLock 内提交可能被同步执行的 merge 会颠倒加锁顺序
+        if (scheduleMerge) {
+            mergeExecutor.execute(this::merge);
+        }
+        return id;
+    }
+
+    public boolean removeKeyword(String keyword) {
+        synchronized (updateLock) {
+            Integer id = keyword == null ? null : ids.remove(keyword);
+            if (id == null) {
+                return false;
+            }
+            live.clear(id);
+            BitSet removed = current.removed;
+            if (deltaIds.get(id)) {
+                deltaIds.clear(id);
+            } else {
+                removed = (BitSet) removed.clone();
+                removed.set(id);
+            }
+            publish(current.base, removed);
+            return true;
+        }
+    }
+
+    public boolean containsKeyword(String keyword) {
+        synchronized (updateLock) {
+            return ids.containsKey(keyword);
+        }
+    }
+
+    /**
+     * id 对应的关键字，已删除的关键字仍然可以查到
+     */
+    public String getKeyword(int id) {
+        Version version = current;
+        if (id < 0 || id >= version.keywordCount) {
+            throw new IndexOutOfBoundsException(String.valueOf(id));
+        }
+        return version.keywords[id];
+    }
+
+    /**
+     * 把增量合并进新的基础自动机；重建期间的增删在合并结束时重新叠加为增量
+     */
+    public void merge() {
+        synchronized (mergeLock) {
+            String[] snapshot;
+            BitSet merged;
+            synchronized (updateLock) {
+                mergeScheduled = false;
+                if (deltaIds.isEmpty() && current.removed.isEmpty()) {
+                    return;
+                }
+                merged = (BitSet) live.clone();
+                snapshot = new String[keywordCount];
+                for (int id = merged.nextSetBit(0); id >= 0; id = merged.nextSetBit(id + 1)) {
+                    snapshot[id] = keywords[id];
+                }
+            }
+            CompiledACTrie base = CompiledACTrie.compile(Arrays.asList(snapshot));
+            synchronized (updateLock) {
+                //合并期间删除的关键字记为 removed，新增的关键字留在增量中
+                BitSet removed = (BitSet) merged.clone();
+                removed.andNot(live);
+                deltaIds.clear();
+                for (int id = live.nextSetBit(snapshot.length); id >= 0; id = live.nextSetBit(id + 1)) {
+                    deltaIds.set(id);
+                }
+                publish(base, removed);
+            }
+        }
+    }
+
+    /**
+     * 增量自动机只用增量关键字紧凑编号构建，代价与增量大小相关而与整个词典无关；deltaToId 把紧凑编号映射回全局 id
+     */
+    private void publish(CompiledACTrie base, BitSet removed) {
+        CompiledACTrie delta = null;
+        int[] deltaToId = null;
+        if (!deltaIds.isEmpty()) {
+            String[] deltaKeywords = new String[deltaIds.cardinality()];
+            deltaToId = new int[deltaKeywords.length];
+            int i = 0;
+            for (int id = deltaIds.nextSetBit(0); id >= 0; id = deltaIds.nextSetBit(id + 1)) {
+                deltaKeywords[i] = keywords[id];
+                deltaToId[i++] = id;
+            }
+            delta = CompiledACTrie.compile(Arrays.asList(deltaKeywords));
+        }
+        current = new Version(base, delta, deltaToId, removed, keywords, keywordCount);
+    }
+
+    /**
+     * 对当前版本做一次扫描，基础自动机和增量自动机在同一趟遍历中各自推进
+     */
+    public boolean match(CharSequence text, MatchHandler handler) {
+        MyDAG.requireNoneNull(text, handler);
+        Version version = current;
+        CompiledACTrie base = version.base;
+        CompiledACTrie delta = version.delta;
+        int baseState = CompiledACTrie.ROOT;
+        int deltaState = CompiledACTrie.ROOT;
+        for (int position = 0; position < text.length(); position++) {
+            char c = text.charAt(position);
+            baseState = base.nextState(baseState, c);
+            if (!emit(base, baseState, position, null, version.removed, handler)) {
+                return false;
+            }
+            if (delta != null) {
+                deltaState = delta.nextState(deltaState, c);
+                if (!emit(delta, deltaState, position, version.deltaToId, null, handler)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 命中格式与 CompiledACTrie.parseText 相同：每个命中占三个 int，起点、终点(含)、关键字 id
+     */
+    public int[] parseText(CharSequence text) {
+        int[][] hits = {new int[16]};
+        int[] size = {0};
+        match(text, (start, end, id) -> {
+            if (size[0] + 3 > hits[0].length) {
+                hits[0] = Arrays.copyOf(hits[0], hits[0].length << 1);
+            }
+            hits[0][size[0]++] = (int) start;
+            hits[0][size[0]++] = (int) end;
+            hits[0][size[0]++] = id;
+            return true;
+        });
+        return Arrays.copyOf(hits[0], size[0]);
+    }
+
+    /**
+     * localToId 不为 null 时 trie 内的关键字编号需要经它转换为全局 id
+     */
+    private static boolean emit(CompiledACTrie trie, int state, int position, int[] localToId, BitSet removed,
+                                MatchHandler handler) {
+        for (int hit = trie.firstOutput(state); hit >= 0; hit = trie.getOutputLink(hit)) {
+            int local = trie.getOutput(hit);
+            int id = localToId == null ? local : localToId[local];
+            if (removed != null && removed.get(id)) {
+                continue;
+            }
+            if (!handler.onMatch(position - trie.keywordLength(local) + 1, position, id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 不可变的版本快照；keywords 中 id 小于 keywordCount 的槽位在发布前写好，之后不再修改
+     */
+    private static class Version {
+        private final CompiledACTrie base;
+        private final CompiledACTrie delta;
+        private final int[] deltaToId;
+        private final BitSet removed;
+        private final String[] keywords;
+        private final int keywordCount;
+
+        Version(CompiledACTrie base, CompiledACTrie delta, int[] deltaToId, BitSet removed, String[] keywords,
+                int keywordCount) {
+            this.base = base;
+            this.delta = delta;
+            this.deltaToId = deltaToId;
+            this.removed = removed;
+            this.keywords = keywords;
+            this.keywordCount = keywordCount;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.wts.dag.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 增量维护的拓扑序(Pearce-Kelly)：加边 from->to 时若 ord(from) < ord(to) 直接通过，
+ * 否则只在 [ord(to), ord(from)] 这段受影响区间内搜索，发现能从 to 走回 from 即判定成环，
+ * 不成环则只重排该区间内的节点，无需整体重新排序
+ *
+ * @Package com.wts.dag.scheduler
+ */
+class DynamicTopologicalOrder<T> {
+
+    private final Map<T, Integer> orders = new HashMap<>();
+    private final Function<T, Iterable<T>> nexts;
+    private final Function<T, Iterable<T>> prevs;
+    private int nextOrder;
+
+    DynamicTopologicalOrder(Function<T, Iterable<T>> nexts, Function<T, Iterable<T>> prevs) {
+        this.nexts = nexts;
+        this.prevs = prevs;
+    }
+
+    void add(T node) {
+        if (!orders.containsKey(node)) {
+            orders.put(node, nextOrder++);
+        }
+    }
+
+    void remove(T node) {
+        orders.remove(node);
+    }
+
+    void clear() {
+        orders.clear();
+        nextOrder = 0;
+    }
+
+    /**
+     * 在加入边 from->to 之前调用，会成环时返回 false 且不改变现有顺序；否则按需调整顺序并返回 true
+     */
+    boolean addEdge(T from, T to) {
+        add(from);
+        add(to);
+        if (from.equals(to)) {
+            return false;
+        }
+        int upper = orders.get(from);
+        int lower = orders.get(to);
+        if (lower > upper) {
+            return true;
+        }
+        List<T> forward = new ArrayList<>();
+        if (!collect(to, nexts, forward, lower, upper, from)) {
+            return false;
+        }
+        List<T> backward = new ArrayList<>();
+        collect(from, prevs, backward, lower, upper, null);
+        reorder(backward, forward);
+        return true;
+    }
+
+    /**
+     * 从 start 出发沿 edges 遍历 order 落在 [lower, upper] 内的节点，碰到 target 返回 false
+     */
+    private boolean collect(T start, Function<T, Iterable<T>> edges, List<T> visited, int lower, int upper, T target) {
+        Set<T> seen = new HashSet<>();
+        Deque<T> stack = new ArrayDeque<>();
+        stack.push(start);
+        seen.add(start);
+        while (!stack.isEmpty()) {
+            T node = stack.pop();
+            visited.add(node);
+            for (T neighbor : edges.apply(node)) {
+                if (neighbor.equals(target)) {
+                    return false;
+                }
+                Integer order = orders.get(neighbor);
+                if (order != null && order >= lower && order <= upper && seen.add(neighbor)) {
+                    stack.push(neighbor);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 受影响节点原先占用的序号池不变，按 "能到达 from 的节点在前、to 能到达的节点在后" 重新分配
+     */
+    private void reorder(List<T> backward, List<T> forward) {
+        Comparator<T> byOrder = Comparator.comparingInt(orders::get);
+        backward.sort(byOrder);
+        forward.sort(byOrder);
+        int[] pool = new int[backward.size() + forward.size()];
+        int i = 0;
+        for (T node : backward) {
+            pool[i++] = orders.get(node);
+        }
+        for (T node : forward) {
+            pool[i++] = orders.get(node);
+        }
+        Arrays.sort(pool);
+        i = 0;
+        for (T node : backward) {
+            orders.put(node, pool[i++]);
+        }
+        for (T node : forward) {
+            orders.put(node, pool[i++]);
+        }
+    }
+}
@@ -2,4 +2,32 @@ package com.wts.dag.scheduler;
 
 public interface Executor {
     boolean execute();
+
+    /**
+     * 预估耗时(纳秒)，关键路径优先调度时用来计算 bottom-level
+     */
+    default long estimatedCost() {
+        return 1L;
+    }
+
+    /**
+     * 预估堆内存占用(字节)，调度器设置了内存预算时用于准入控制
+     */
+    default long estimatedMemory() {
+        return 0L;
+    }
+
+    /**
+     * 单个任务的执行时限(毫秒)，超时后整个调度被取消，0 表示不限制
+     */
+    default long timeoutMillis() {
+        return 0L;
+    }
+
+    /**
+     * 输入内容指纹，配合 ResultCache 使用：指纹相同说明输入未变，可以跳过执行；返回 null 表示不缓存
+     */
+    default String fingerprint() {
+        return null;
+    }
 }
@@ -0,0 +1,78 @@
+package com.wts.dag.scheduler;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 融合后的调度单元：按拓扑顺序在同一次派发中依次执行多个小任务。
+ * 某个原始任务失败时抛出 TaskFailedException 指明是哪一个，之前已成功的成员保持已执行状态
+ *
+ * @Package com.wts.dag.scheduler
+ */
+public class FusedTask extends Task {
+
+    private final List<Task> members;
+
+    public FusedTask(List<Task> members) {
+        super(null, "fused" + members.size(), 0);
+        if (members.isEmpty()) {
+            throw new IllegalArgumentException();
+        }
+        this.members = members;
+    }
+
+    @Override
+    public boolean execute() {
+        for (Task member : members) {
+            if (member.hasExecuted()) {
+                continue;
+            }
+            boolean success;
+            try {
+                success = member.execute();
+            } catch (RuntimeException e) {
+                throw new TaskFailedException(member, e);
+            }
+            if (!success) {
+                throw new TaskFailedException(member, null);
+            }
+            member.markExecuted();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean hasExecuted() {
+        for (Task member : members) {
+            if (!member.hasExecuted()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long estimatedCost() {
+        long cost = 0;
+        for (Task member : members) {
+            cost += member.estimatedCost();
+        }
+        return cost;
+    }
+
+    /**
+     * 成员串行执行，取其中最大的占用
+     */
+    @Override
+    public long estimatedMemory() {
+        long memory = 0;
+        for (Task member : members) {
+            memory = Math.max(memory, member.estimatedMemory());
+        }
+        return memory;
+    }
+
+    public List<Task> getMembers() {
+        return Collections.unmodifiableList(members);
+    }
+}
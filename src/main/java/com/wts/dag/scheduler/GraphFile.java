@@ -0,0 +1,287 @@
+package com.wts.dag.scheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * DAG 的二进制文件格式，open 时通过 MappedByteBuffer 映射，不为顶点/边创建对象，拓扑排序直接在映射数据上执行。
+ * 字节序记录在 header 中(write 总是写小端，与 CompiledACTrie 一致)，open 按记录的字节序读取。
+ * <pre>
+ * header   int magic, int version, int vertexCount, int edgeCount, int stringPoolBytes,
+ *          byte 字节序(0 大端，1 小端), byte[3] 保留
+ * long[vertexCount]      顶点 id，Long.MIN_VALUE 表示 null
+ * int[vertexCount]       名称在字符串池中的偏移
+ * int[vertexCount]       名称的字节数，-1 表示 null
+ * int[vertexCount + 1]   出边 CSR 偏移，int[edgeCount] 出边终点
+ * int[vertexCount + 1]   入边 CSR 偏移，int[edgeCount] 入边起点
+ * byte[stringPoolBytes]  UTF-8 字符串池
+ * </pre>
+ *
+ * @Package com.wts.dag.scheduler
+ */
+public class GraphFile {
+
+    private static final int MAGIC = 0x44414742;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 24;
+    private static final int BYTE_ORDER_OFFSET = 20;
+    private static final byte BIG_ENDIAN = 0;
+    private static final byte LITTLE_ENDIAN = 1;
+    private static final int NULL_NAME_LENGTH = -1;
+    static final long NULL_ID = Long.MIN_VALUE;
+
+    private final int vertexCount;
+    private final int edgeCount;
+    private final LongBuffer ids;
+    private final IntBuffer nameOffsets;
+    private final IntBuffer nameLengths;
+    private final IntBuffer nextOffsets;
+    private final IntBuffer nexts;
+    private final IntBuffer prevOffsets;
+    private final IntBuffer prevs;
+    private final ByteBuffer stringPool;
+
+    private GraphFile(ByteBuffer buffer) {
+        if (buffer.capacity() < HEADER_BYTES) {
+            throw new IllegalArgumentException("not a graph file");
+        }
+        //字节序标记只有一个字节，不依赖字节序即可读出
+        byte byteOrder = buffer.get(BYTE_ORDER_OFFSET);
+        if (byteOrder != BIG_ENDIAN && byteOrder != LITTLE_ENDIAN) {
+            throw new IllegalArgumentException("not a graph file");
+        }
+        buffer.order(byteOrder == LITTLE_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("not a graph file");
+        }
+        this.vertexCount = buffer.getInt(8);
+        this.edgeCount = buffer.getInt(12);
+        int stringPoolBytes = buffer.getInt(16);
+        int position = HEADER_BYTES;
+        this.ids = slice(buffer, position, vertexCount * 8).asLongBuffer();
+        position += vertexCount * 8;
+        this.nameOffsets = slice(buffer, position, vertexCount * 4).asIntBuffer();
+        position += vertexCount * 4;
+        this.nameLengths = slice(buffer, position, vertexCount * 4).asIntBuffer();
+        position += vertexCount * 4;
+        this.nextOffsets = slice(buffer, position, (vertexCount + 1) * 4).asIntBuffer();
+        position += (vertexCount + 1) * 4;
+        this.nexts = slice(buffer, position, edgeCount * 4).asIntBuffer();
+        position += edgeCount * 4;
+        this.prevOffsets = slice(buffer, position, (vertexCount + 1) * 4).asIntBuffer();
+        position += (vertexCount + 1) * 4;
+        this.prevs = slice(buffer, position, edgeCount * 4).asIntBuffer();
+        position += edgeCount * 4;
+        this.stringPool = slice(buffer, position, stringPoolBytes);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(position);
+        duplicate.limit(position + length);
+        //slice 会把字节序重置为大端
+        return duplicate.slice().order(buffer.order());
+    }
+
+    /**
+     * 只读映射文件，耗时与图的规模无关
+     */
+    public static GraphFile open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("graph file too large: " + channel.size());
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new GraphFile(buffer);
+        }
+    }
+
+    public static void write(Digraph digraph, File file) throws IOException {
+        write(digraph.compile(), file);
+    }
+
+    public static void write(CompiledDigraph graph, File file) throws IOException {
+        int size = graph.size();
+        long[] ids = new long[size];
+        String[] names = new String[size];
+        int[] nextOffsets = new int[size + 1];
+        int[] nexts = new int[graph.edgeCount()];
+        int[] prevOffsets = new int[size + 1];
+        int[] prevs = new int[graph.edgeCount()];
+        for (int i = 0; i < size; i++) {
+            Task task = graph.getTask(i);
+            ids[i] = task.getId() == null ? NULL_ID : task.getId();
+            names[i] = task.getName();
+            nextOffsets[i + 1] = graph.nextEnd(i);
+            prevOffsets[i + 1] = graph.prevEnd(i);
+        }
+        for (int offset = 0; offset < nexts.length; offset++) {
+            nexts[offset] = graph.next(offset);
+            prevs[offset] = graph.prev(offset);
+        }
+        write(file, ids, names, nextOffsets, nexts, prevOffsets, prevs);
+    }
+
+    /**
+     * 目标文件被原子替换，正在映射旧文件的读者不受影响
+     */
+    static void write(File file, long[] ids, String[] names, int[] nextOffsets, int[] nexts,
+                      int[] prevOffsets, int[] prevs) throws IOException {
+        int vertexCount = ids.length;
+        int[] nameOffsets = new int[vertexCount];
+        int[] nameLengths = new int[vertexCount];
+        byte[][] encoded = new byte[vertexCount][];
+        int stringPoolBytes = 0;
+        for (int i = 0; i < vertexCount; i++) {
+            nameOffsets[i] = stringPoolBytes;
+            if (names[i] == null) {
+                nameLengths[i] = NULL_NAME_LENGTH;
+                continue;
+            }
+            encoded[i] = names[i].getBytes(StandardCharsets.UTF_8);
+            nameLengths[i] = encoded[i].length;
+            stringPoolBytes += encoded[i].length;
+        }
+        long total = HEADER_BYTES + vertexCount * 16L + (vertexCount + 1) * 8L + nexts.length * 8L
+                + stringPoolBytes;
+        if (total > Integer.MAX_VALUE) {
+            throw new IOException("graph too large: " + total + " bytes");
+        }
+        int poolBytes = stringPoolBytes;
+        MappedFiles.write(file, total, buffer -> {
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(vertexCount).putInt(nexts.length).putInt(poolBytes)
+                    .put(LITTLE_ENDIAN).put((byte) 0).put((byte) 0).put((byte) 0);
+            buffer.asLongBuffer().put(ids);
+            buffer.position(buffer.position() + vertexCount * 8);
+            putInts(buffer, nameOffsets);
+            putInts(buffer, nameLengths);
+            putInts(buffer, nextOffsets);
+            putInts(buffer, nexts);
+            putInts(buffer, prevOffsets);
+            putInts(buffer, prevs);
+            for (byte[] bytes : encoded) {
+                if (bytes != null) {
+                    buffer.put(bytes);
+                }
+            }
+        });
+    }
+
+    private static void putInts(ByteBuffer buffer, int[] values) {
+        buffer.asIntBuffer().put(values);
+        buffer.position(buffer.position() + values.length * 4);
+    }
+
+    public int size() {
+        return vertexCount;
+    }
+
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * 顶点 id，写入时为 null 的返回 null
+     */
+    public Long getId(int index) {
+        long id = ids.get(index);
+        return id == NULL_ID ? null : id;
+    }
+
+    /**
+     * 顶点名称，写入时为 null 的返回 null
+     */
+    public String getName(int index) {
+        int length = nameLengths.get(index);
+        if (length == NULL_NAME_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer duplicate = stringPool.duplicate();
+        duplicate.position(nameOffsets.get(index));
+        duplicate.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int nextBegin(int index) {
+        return nextOffsets.get(index);
+    }
+
+    public int nextEnd(int index) {
+        return nextOffsets.get(index + 1);
+    }
+
+    public int next(int offset) {
+        return nexts.get(offset);
+    }
+
+    public int prevBegin(int index) {
+        return prevOffsets.get(index);
+    }
+
+    public int prevEnd(int index) {
+        return prevOffsets.get(index + 1);
+    }
+
+    public int prev(int offset) {
+        return prevs.get(offset);
+    }
+
+    public int inDegree(int index) {
+        return prevOffsets.get(index + 1) - prevOffsets.get(index);
+    }
+
+    /**
+     * 直接在映射数据上做 Kahn 拓扑排序；存在环时抛出 IllegalStateException
+     */
+    public int[] topologicalSort() {
+        int[] degrees = new int[vertexCount];
+        int[] queue = new int[vertexCount];
+        int tail = 0;
+        for (int i = 0; i < vertexCount; i++) {
+            degrees[i] = inDegree(i);
+            if (degrees[i] == 0) {
+                queue[tail++] = i;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int index = queue[head];
+            for (int offset = nextOffsets.get(index), end = nextOffsets.get(index + 1); offset < end; offset++) {
+                int next = nexts.get(offset);
+                if (--degrees[next] == 0) {
+                    queue[tail++] = next;
+                }
+            }
+        }
+        if (tail != vertexCount) {
+            throw new IllegalStateException("cycle detected among " + (vertexCount - tail) + " vertices");
+        }
+        return queue;
+    }
+
+    /**
+     * 为每个顶点创建一个 Task(id、名称来自文件)，边数组整块拷贝，得到可直接调度的 CompiledDigraph
+     */
+    public CompiledDigraph toCompiledDigraph() {
+        Task[] tasks = new Task[vertexCount];
+        for (int i = 0; i < vertexCount; i++) {
+            tasks[i] = new Task(getId(i), getName(i), 0);
+        }
+        return new CompiledDigraph(tasks, copy(nextOffsets), copy(nexts), copy(prevOffsets), copy(prevs));
+    }
+
+    private static int[] copy(IntBuffer buffer) {
+        int[] values = new int[buffer.capacity()];
+        buffer.duplicate().get(values);
+        return values;
+    }
+}
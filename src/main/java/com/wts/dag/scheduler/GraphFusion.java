@@ -0,0 +1,118 @@
+package com.wts.dag.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 图编译阶段的任务融合：把预估耗时不超过 maxCost 的小任务合并为一个调度单元，减少派发次数。
+ * <ul>
+ * <li>线性链：u 只有一个后继 v，v 只有一个前驱 u，则 v 并入 u 所在的单元</li>
+ * <li>小扇入：v 的前驱全部是只指向 v 的源点小任务，且数量不超过 maxFanIn，则这些前驱与 v 合为一个单元</li>
+ * </ul>
+ * 单元之间的依赖由原始边推导，融合不会引入环；只有一个成员的单元直接使用原 Task，没有额外开销。
+ * 融合单元的成员各自按 id 记入 CompletionLog；单元本身没有超时和指纹，带有这两个属性的任务不参与融合
+ *
+ * @Package com.wts.dag.scheduler
+ */
+public class GraphFusion {
+
+    private static final int DEFAULT_MAX_FAN_IN = 8;
+
+    private GraphFusion() {
+    }
+
+    public static Digraph fuse(Digraph digraph, long maxCost) {
+        return fuse(digraph, maxCost, DEFAULT_MAX_FAN_IN);
+    }
+
+    public static Digraph fuse(Digraph digraph, long maxCost, int maxFanIn) {
+        CompiledDigraph graph = digraph.compile();
+        int size = graph.size();
+        boolean[] small = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            Task task = graph.getTask(i);
+            small[i] = fusible(task) && task.estimatedCost() <= maxCost;
+        }
+        //groups[i] 为任务 i 所在单元的编号，members 按拓扑序存放每个单元的成员
+        int[] groups = new int[size];
+        List<List<Task>> members = new ArrayList<List<Task>>();
+        for (int index : graph.topologicalSort()) {
+            int group = -1;
+            if (small[index]) {
+                group = chainGroup(graph, small, groups, index);
+                if (group < 0) {
+                    group = fanInGroup(graph, small, groups, members, index, maxFanIn);
+                }
+            }
+            if (group < 0) {
+                group = members.size();
+                members.add(new ArrayList<Task>());
+            }
+            groups[index] = group;
+            members.get(group).add(graph.getTask(index));
+        }
+
+        Digraph fused = new Digraph();
+        Task[] units = new Task[members.size()];
+        for (int group = 0; group < units.length; group++) {
+            List<Task> groupMembers = members.get(group);
+            if (groupMembers.isEmpty()) {
+                continue;
+            }
+            units[group] = groupMembers.size() == 1 ? groupMembers.get(0) : new FusedTask(groupMembers);
+            fused.addTask(units[group]);
+        }
+        for (int index = 0; index < size; index++) {
+            Task unit = units[groups[index]];
+            for (int offset = graph.nextBegin(index), end = graph.nextEnd(index); offset < end; offset++) {
+                Task nextUnit = units[groups[graph.next(offset)]];
+                if (nextUnit != unit && !fused.getPrevs(nextUnit).contains(unit)) {
+                    fused.addEdge(nextUnit, unit);
+                }
+            }
+        }
+        return fused;
+    }
+
+    private static boolean fusible(Task task) {
+        return !(task instanceof AsyncExecutor) && task.timeoutMillis() <= 0 && task.fingerprint() == null;
+    }
+
+    /**
+     * index 是其唯一前驱的唯一后继时，返回前驱所在单元，否则返回 -1
+     */
+    private static int chainGroup(CompiledDigraph graph, boolean[] small, int[] groups, int index) {
+        if (graph.inDegree(index) != 1) {
+            return -1;
+        }
+        int prev = graph.prev(graph.prevBegin(index));
+        return small[prev] && graph.outDegree(prev) == 1 ? groups[prev] : -1;
+    }
+
+    /**
+     * index 的前驱全部是只指向它的小源点时，把这些前驱所在的单元(都只含其自身)并入一个新单元，返回新单元编号
+     */
+    private static int fanInGroup(CompiledDigraph graph, boolean[] small, int[] groups, List<List<Task>> members,
+                                  int index, int maxFanIn) {
+        int inDegree = graph.inDegree(index);
+        if (inDegree < 2 || inDegree > maxFanIn) {
+            return -1;
+        }
+        for (int offset = graph.prevBegin(index), end = graph.prevEnd(index); offset < end; offset++) {
+            int prev = graph.prev(offset);
+            if (!small[prev] || graph.inDegree(prev) != 0 || graph.outDegree(prev) != 1) {
+                return -1;
+            }
+        }
+        int group = members.size();
+        List<Task> groupMembers = new ArrayList<Task>(inDegree + 1);
+        for (int offset = graph.prevBegin(index), end = graph.prevEnd(index); offset < end; offset++) {
+            int prev = graph.prev(offset);
+            groupMembers.addAll(members.get(groups[prev]));
+            members.get(groups[prev]).clear();
+            groups[prev] = group;
+        }
+        members.add(groupMembers);
+        return group;
+    }
+}
@@ -0,0 +1,67 @@
+package com.wts.dag.scheduler;
+
+import cn.hutool.log.StaticLog;
+
+/**
+ * 包装用户提供的监听器，回调抛出的异常只记录日志：监听器出错不能打断计数、预算归还等调度自身的状态维护
+ *
+ * @Package com.wts.dag.scheduler
+ */
+class GuardedSchedulerListener implements SchedulerListener {
+
+    private final SchedulerListener delegate;
+
+    private GuardedSchedulerListener(SchedulerListener delegate) {
+        this.delegate = delegate;
+    }
+
+    static SchedulerListener of(SchedulerListener listener) {
+        return listener == null || listener instanceof GuardedSchedulerListener ? listener
+                : new GuardedSchedulerListener(listener);
+    }
+
+    @Override
+    public void onScheduleStart(CompiledDigraph graph, long nanos) {
+        try {
+            delegate.onScheduleStart(graph, nanos);
+        } catch (RuntimeException e) {
+            StaticLog.warn(e, "SchedulerListener.onScheduleStart failed");
+        }
+    }
+
+    @Override
+    public void onReady(int index, long nanos) {
+        try {
+            delegate.onReady(index, nanos);
+        } catch (RuntimeException e) {
+            StaticLog.warn(e, "SchedulerListener.onReady failed, index: [{}]", index);
+        }
+    }
+
+    @Override
+    public void onStart(int index, long nanos) {
+        try {
+            delegate.onStart(index, nanos);
+        } catch (RuntimeException e) {
+            StaticLog.warn(e, "SchedulerListener.onStart failed, index: [{}]", index);
+        }
+    }
+
+    @Override
+    public void onEnd(int index, long nanos, boolean success) {
+        try {
+            delegate.onEnd(index, nanos, success);
+        } catch (RuntimeException e) {
+            StaticLog.warn(e, "SchedulerListener.onEnd failed, index: [{}]", index);
+        }
+    }
+
+    @Override
+    public void onScheduleEnd(long nanos) {
+        try {
+            delegate.onScheduleEnd(nanos);
+        } catch (RuntimeException e) {
+            StaticLog.warn(e, "SchedulerListener.onScheduleEnd failed");
+        }
+    }
+}
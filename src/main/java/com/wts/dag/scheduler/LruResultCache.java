@@ -0,0 +1,79 @@
+package com.wts.dag.scheduler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 内存 LRU 缓存，超过 maxEntries 时淘汰最久未访问的 key；
+ * 可选的 backing(例如 DiskResultCache)作为下一级：内存未命中时查询下一级并回填，写入时同时写下一级
+ *
+ * @Package com.wts.dag.scheduler
+ */
+public class LruResultCache implements ResultCache {
+
+    private final Map<String, Boolean> entries;
+    private final ResultCache backing;
+
+    public LruResultCache(int maxEntries) {
+        this(maxEntries, null);
+    }
+
+    public LruResultCache(int maxEntries, ResultCache backing) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.entries = new BoundedMap(maxEntries);
+        this.backing = backing;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        synchronized (entries) {
+            if (entries.get(key) != null) {
+                return true;
+            }
+        }
+        if (backing != null && backing.contains(key)) {
+            synchronized (entries) {
+                entries.put(key, Boolean.TRUE);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void put(String key) {
+        synchronized (entries) {
+            entries.put(key, Boolean.TRUE);
+        }
+        if (backing != null) {
+            backing.put(key);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * 按访问顺序排列，超过 maxEntries 时淘汰最久未访问的条目
+     */
+    private static class BoundedMap extends LinkedHashMap<String, Boolean> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        BoundedMap(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > maxEntries;
+        }
+    }
+}
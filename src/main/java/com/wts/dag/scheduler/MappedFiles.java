@@ -0,0 +1,43 @@
+package com.wts.dag.scheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * 映射文件的原子写出：先写同目录下的临时文件并 force，再原子替换目标文件。
+ * 已经映射旧文件的读者继续持有旧 inode，不会因为文件被原地截断而在访问时崩溃(SIGBUS)
+ *
+ * @Package com.wts.dag.scheduler
+ */
+final class MappedFiles {
+
+    private MappedFiles() {
+    }
+
+    static void write(File file, long size, Consumer<ByteBuffer> writer) throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        boolean moved = false;
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                writer.accept(buffer);
+                buffer.force();
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            moved = true;
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.wts.dag.scheduler;
+
+/**
+ * CompiledACTrie 的命中回调，位置为字符下标(流式匹配时从流的开头计数)，end 包含在命中内。
+ * 返回 false 时匹配立即停止
+ *
+ * @Package com.wts.dag.scheduler
+ */
+@FunctionalInterface
+public interface MatchHandler {
+
+    boolean onMatch(long start, long end, int keywordId);
+}
@@ -0,0 +1,25 @@
+package com.wts.dag.scheduler;
+
+/**
+ * CompiledACTrie 的命中筛选方式，在扫描过程中完成，不会先生成全部命中再过滤
+ *
+ * @Package com.wts.dag.scheduler
+ */
+public enum MatchMode {
+    /**
+     * 所有命中，包括互相重叠、互为子串的关键字
+     */
+    ALL,
+    /**
+     * 从左到右，每个结束位置取起点在上一个命中之后的最长关键字，命中互不重叠
+     */
+    NON_OVERLAPPING,
+    /**
+     * 每次取起点最靠左的命中，同一起点取最长的关键字，命中互不重叠
+     */
+    LEFTMOST_LONGEST,
+    /**
+     * 每次取起点最靠左的命中，同一起点取 id 最小(最先添加)的关键字，命中互不重叠
+     */
+    LEFTMOST_FIRST
+}
@@ -0,0 +1,74 @@
+package com.wts.dag.scheduler;
+
+import java.util.Arrays;
+
+/**
+ * 内存预算准入：就绪任务按优先级排队，只有预估占用不超过剩余预算时才放行，
+ * 队首放不下时继续向后找放得下的(通常是更小的)任务补位；
+ * 单个任务超过总预算时，等其他任务全部释放后独占执行，避免永远无法调度
+ *
+ * @Package com.wts.dag.scheduler
+ */
+class MemoryBudget {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final long capacity;
+    private final long[] memories;
+    //为 null 时按就绪先后排队
+    private final long[] priorities;
+    private long available;
+    private int[] pending = new int[16];
+    private int size;
+
+    MemoryBudget(long capacity, long[] memories, long[] priorities) {
+        this.capacity = capacity;
+        this.available = capacity;
+        this.memories = memories;
+        this.priorities = priorities;
+    }
+
+    synchronized void offer(int index) {
+        if (size == pending.length) {
+            pending = Arrays.copyOf(pending, size << 1);
+        }
+        int position = size;
+        if (priorities != null) {
+            while (position > 0 && priorities[pending[position - 1]] < priorities[index]) {
+                pending[position] = pending[position - 1];
+                position--;
+            }
+        }
+        pending[position] = index;
+        size++;
+    }
+
+    /**
+     * 按优先级取出当前预算内可以放行的任务，并扣减预算
+     */
+    synchronized int[] admit() {
+        int[] admitted = EMPTY;
+        int count = 0;
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            int index = pending[i];
+            long memory = memories[index];
+            boolean fits = memory <= available || (memory > capacity && available == capacity);
+            if (fits) {
+                available -= Math.min(memory, available);
+                if (count == admitted.length) {
+                    admitted = Arrays.copyOf(admitted, Math.max(4, count << 1));
+                }
+                admitted[count++] = index;
+            } else {
+                pending[kept++] = index;
+            }
+        }
+        size = kept;
+        return count == admitted.length ? admitted : Arrays.copyOf(admitted, count);
+    }
+
+    synchronized void release(int index) {
+        available = Math.min(capacity, available + Math.min(memories[index], capacity));
+    }
+}
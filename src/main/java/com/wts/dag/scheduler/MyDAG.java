@@ -1,6 +1,12 @@
 package com.wts.dag.scheduler;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * @Package com.wts.dag.scheduler
@@ -9,6 +15,11 @@ import java.util.*;
  */
 public class MyDAG {
 
+    //顶点数超过该值时分层计算走 ForkJoinPool
+    private static final int PARALLEL_LAYER_THRESHOLD = 1 << 16;
+    //单个 fork-join 子任务处理的最大 frontier 长度
+    private static final int LAYER_SPLIT_SIZE = 4096;
+
     public static void requireNotNull(Object object) {
         if (object == null) {
             throw new IllegalArgumentException();
@@ -40,6 +51,7 @@ public class MyDAG {
         System.out.println(graph);
         System.out.println(graph.bfsTopologicalSort());
         System.out.println(graph.dfsTopologicalSort());
+        System.out.println(graph.layers());
     }
 
     public static class Vertex {
@@ -122,32 +134,75 @@ public class MyDAG {
         private final Map<Vertex, Set<Edge>> incommingEdgeMap = new HashMap<>();
         private final Map<Vertex, Set<Edge>> outcommingEdgeMap = new HashMap<>();
 
+        //为 null 时不做在线环检测，环在拓扑排序时以 CycleException 报出
+        private final DynamicTopologicalOrder<Vertex> order;
+
+        public Graph() {
+            this(false);
+        }
+
+        /**
+         * @param cycleDetection 是否在 addEdge 时在线检测环；一次性建图时应关闭，由拓扑排序统一检测
+         */
+        public Graph(boolean cycleDetection) {
+            this.order = cycleDetection ? new DynamicTopologicalOrder<>(this::nexts, this::prevs) : null;
+        }
+
+        public boolean isCycleDetection() {
+            return order != null;
+        }
+
         public boolean addVertex(Vertex vertex) {
             requireNotNull(vertex);
-            return vertices.add(vertex);
+            boolean added = vertices.add(vertex);
+            if (added && order != null) {
+                order.add(vertex);
+            }
+            return added;
         }
 
+        /**
+         * 删除顶点及其所有边，只访问相邻顶点的边集合
+         */
         public boolean removeVertex(Vertex vertex) {
             requireNotNull(vertex);
             boolean removed = vertices.remove(vertex);
             if (removed) {
-                Set<Edge> incommingEdges = incommingEdgeMap.get(vertex);
+                Set<Edge> incommingEdges = incommingEdgeMap.remove(vertex);
                 if (incommingEdges != null) {
-                    incommingEdges.forEach(edges::remove);
+                    for (Edge edge : incommingEdges) {
+                        edges.remove(edge);
+                        removeFrom(outcommingEdgeMap, edge.getFrom(), edge);
+                    }
                 }
-                Set<Edge> outcommingEdges = outcommingEdgeMap.get(vertex);
+                Set<Edge> outcommingEdges = outcommingEdgeMap.remove(vertex);
                 if (outcommingEdges != null) {
-                    outcommingEdges.forEach(edges::remove);
+                    for (Edge edge : outcommingEdges) {
+                        edges.remove(edge);
+                        removeFrom(incommingEdgeMap, edge.getTo(), edge);
+                    }
+                }
+                if (order != null) {
+                    order.remove(vertex);
                 }
             }
             return removed;
         }
 
+        /**
+         * 添加边 from->to；开启在线环检测时，会形成环则抛出 IllegalArgumentException，图保持不变
+         */
         public void addEdge(Vertex from, Vertex to) {
             requireNoneNull(from, to);
+            Edge edge = new Edge(from, to);
+            if (edges.contains(edge)) {
+                return;
+            }
             addVertex(from);
             addVertex(to);
-            Edge edge = new Edge(from, to);
+            if (order != null && !order.addEdge(from, to)) {
+                throw new IllegalArgumentException("edge would create a cycle: " + edge);
+            }
             edges.add(edge);
             incommingEdgeMap.computeIfAbsent(to, k -> new HashSet<>()).add(edge);
             outcommingEdgeMap.computeIfAbsent(from, k -> new HashSet<>()).add(edge);
@@ -156,68 +211,345 @@ public class MyDAG {
         public void removeEdge(Vertex from, Vertex to) {
             requireNoneNull(from, to);
             Edge edge = new Edge(from, to);
-            edges.remove(edge);
-            incommingEdgeMap.computeIfAbsent(to, k -> new HashSet<>()).remove(edge);
-            outcommingEdgeMap.computeIfAbsent(from, k -> new HashSet<>()).remove(edge);
+            if (edges.remove(edge)) {
+                removeFrom(incommingEdgeMap, to, edge);
+                removeFrom(outcommingEdgeMap, from, edge);
+            }
         }
 
-
-        private List<Vertex> dfsTopologicalSort() {
-            LinkedHashSet<Vertex> result = new LinkedHashSet<>();
-            for (Vertex vertex : vertices) {
-                doDfsTopologicalSort(vertex, result);
+        private static void removeFrom(Map<Vertex, Set<Edge>> edgeMap, Vertex vertex, Edge edge) {
+            Set<Edge> vertexEdges = edgeMap.get(vertex);
+            if (vertexEdges != null && vertexEdges.remove(edge) && vertexEdges.isEmpty()) {
+                edgeMap.remove(vertex);
             }
-            return new ArrayList<>(result);
         }
 
-        private void doDfsTopologicalSort(Vertex vertex, LinkedHashSet<Vertex> result) {
-            if (result.contains(vertex)) {
-                return;
-            }
-            Set<Edge> imcommingEdges = incommingEdgeMap.get(vertex);
-            if (imcommingEdges != null) {
-                for (Edge imcommingEdge : imcommingEdges) {
-                    doDfsTopologicalSort(imcommingEdge.getFrom(), result);
-                }
+        private Iterable<Vertex> nexts(Vertex vertex) {
+            Set<Edge> outcommingEdges = outcommingEdgeMap.get(vertex);
+            if (outcommingEdges == null) {
+                return Collections.emptySet();
             }
-            result.add(vertex);
+            return () -> outcommingEdges.stream().map(Edge::getTo).iterator();
         }
 
-        private List<Vertex> bfsTopologicalSort() {
-            List<Vertex> result = new ArrayList<>();
-            Map<Vertex, Integer> degreeMap = new HashMap<>();
-            for (Vertex vertex : vertices) {
-                degreeMap.put(vertex, Optional.ofNullable(incommingEdgeMap.get(vertex)).map(Set::size).orElse(0));
+        private Iterable<Vertex> prevs(Vertex vertex) {
+            Set<Edge> incommingEdges = incommingEdgeMap.get(vertex);
+            if (incommingEdges == null) {
+                return Collections.emptySet();
             }
-            Queue<Vertex> queue = new LinkedList<>();
-            degreeMap.forEach(((vertex, degree) -> {
-                if (degree == 0) {
-                    queue.offer(vertex);
-                }
-            }));
-            while (!queue.isEmpty()) {
-                int queueSize = queue.size();
-                for (int i = 0; i < queueSize; i++) {
-                    Vertex vertex = queue.poll();
-                    degreeMap.remove(vertex);
-                    result.add(vertex);
-                    Set<Edge> outcommingEges = outcommingEdgeMap.get(vertex);
-                    if (outcommingEges != null) {
-                        for (Edge outcommingEge : outcommingEges) {
-                            Integer degree = degreeMap.get(outcommingEge.getTo());
-                            if (degree != null) {
-                                degreeMap.put(outcommingEge.getTo(), degree - 1);
+            return () -> incommingEdges.stream().map(Edge::getFrom).iterator();
+        }
+
+        /**
+         * 迭代式 DFS 拓扑排序(沿入边后序遍历)，不依赖调用栈深度；存在环时抛出 CycleException
+         */
+        public List<Vertex> dfsTopologicalSort() {
+            IndexedGraph graph = new IndexedGraph(vertices, edges);
+            int size = graph.vertices.length;
+            //0:未访问 1:在栈上 2:已输出
+            byte[] colors = new byte[size];
+            int[] stack = new int[size];
+            int[] cursors = new int[size];
+            List<Vertex> result = new ArrayList<>(size);
+            for (int root = 0; root < size; root++) {
+                if (colors[root] != 0) {
+                    continue;
+                }
+                int top = 0;
+                stack[0] = root;
+                cursors[0] = graph.prevOffsets[root];
+                colors[root] = 1;
+                while (top >= 0) {
+                    int vertex = stack[top];
+                    if (cursors[top] < graph.prevOffsets[vertex + 1]) {
+                        int prev = graph.prevs[cursors[top]++];
+                        if (colors[prev] == 1) {
+                            int from = top;
+                            while (stack[from] != prev) {
+                                from--;
+                            }
+                            List<Vertex> cycle = new ArrayList<>(top - from + 1);
+                            for (int i = top; i >= from; i--) {
+                                cycle.add(graph.vertices[stack[i]]);
                             }
+                            throw new CycleException(cycle);
                         }
+                        if (colors[prev] == 0) {
+                            colors[prev] = 1;
+                            stack[++top] = prev;
+                            cursors[top] = graph.prevOffsets[prev];
+                        }
+                    } else {
+                        colors[vertex] = 2;
+                        result.add(graph.vertices[vertex]);
+                        top--;
                     }
                 }
-                degreeMap.forEach(((vertex, degree) -> {
-                    if (degree == 0) {
-                        queue.offer(vertex);
+            }
+            return result;
+        }
+
+        /**
+         * Kahn 拓扑排序，入度存放在 int[]，队列为定长数组，O(V+E)；存在环时抛出 CycleException
+         */
+        public List<Vertex> bfsTopologicalSort() {
+            IndexedGraph graph = new IndexedGraph(vertices, edges);
+            int size = graph.vertices.length;
+            int[] degrees = new int[size];
+            int[] queue = new int[size];
+            int tail = 0;
+            for (int i = 0; i < size; i++) {
+                degrees[i] = graph.prevOffsets[i + 1] - graph.prevOffsets[i];
+                if (degrees[i] == 0) {
+                    queue[tail++] = i;
+                }
+            }
+            for (int head = 0; head < tail; head++) {
+                int vertex = queue[head];
+                for (int offset = graph.nextOffsets[vertex]; offset < graph.nextOffsets[vertex + 1]; offset++) {
+                    int next = graph.nexts[offset];
+                    if (--degrees[next] == 0) {
+                        queue[tail++] = next;
                     }
-                }));
+                }
+            }
+            if (tail != size) {
+                throw new CycleException(graph.findCycle(degrees));
+            }
+            List<Vertex> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(graph.vertices[queue[i]]);
+            }
+            return result;
+        }
+        /**
+         * 拓扑分层：同一层内的顶点互不依赖，可以并发执行
+         */
+        public List<List<Vertex>> layers() {
+            return layers(ForkJoinPool.commonPool());
+        }
+
+        /**
+         * 拓扑分层，顶点数达到 PARALLEL_LAYER_THRESHOLD 时在 pool 上并行处理每一层的入度递减
+         */
+        public List<List<Vertex>> layers(ForkJoinPool pool) {
+            requireNotNull(pool);
+            IndexedGraph graph = new IndexedGraph(vertices, edges);
+            int size = graph.vertices.length;
+            boolean parallel = size >= PARALLEL_LAYER_THRESHOLD && pool.getParallelism() > 1;
+            AtomicIntegerArray degrees = new AtomicIntegerArray(size);
+            //frontier[begin, end) 为当前层，下一层追加在 end 之后
+            int[] frontier = new int[size];
+            int end = 0;
+            for (int i = 0; i < size; i++) {
+                int degree = graph.prevOffsets[i + 1] - graph.prevOffsets[i];
+                degrees.set(i, degree);
+                if (degree == 0) {
+                    frontier[end++] = i;
+                }
+            }
+            List<List<Vertex>> result = new ArrayList<>();
+            AtomicInteger tail = new AtomicInteger(end);
+            int begin = 0;
+            while (begin < end) {
+                List<Vertex> layer = new ArrayList<>(end - begin);
+                for (int i = begin; i < end; i++) {
+                    layer.add(graph.vertices[frontier[i]]);
+                }
+                result.add(layer);
+                if (parallel && end - begin > LAYER_SPLIT_SIZE) {
+                    pool.invoke(new LayerTask(graph, degrees, frontier, tail, begin, end));
+                } else {
+                    new LayerTask(graph, degrees, frontier, tail, begin, end).compute();
+                }
+                begin = end;
+                end = tail.get();
+            }
+            if (end != size) {
+                int[] remaining = new int[size];
+                for (int i = 0; i < size; i++) {
+                    remaining[i] = degrees.get(i);
+                }
+                throw new CycleException(graph.findCycle(remaining));
             }
             return result;
         }
+
+        /**
+         * 以 GraphFile 二进制格式写出，顶点名称写入字符串池，id 为空
+         */
+        public void writeTo(File file) throws IOException {
+            requireNotNull(file);
+            IndexedGraph graph = new IndexedGraph(vertices, edges);
+            long[] ids = new long[graph.vertices.length];
+            String[] names = new String[graph.vertices.length];
+            Arrays.fill(ids, GraphFile.NULL_ID);
+            for (int i = 0; i < names.length; i++) {
+                names[i] = graph.vertices[i].getName();
+            }
+            GraphFile.write(file, ids, names, graph.nextOffsets, graph.nexts, graph.prevOffsets, graph.prevs);
+        }
+
+        /**
+         * 按拓扑序从 GraphFile 重建 Graph，文件中的图已经排过序，不需要在线环检测。
+         * Vertex 以名称区分，文件中有未命名或重名的顶点(例如由未命名的 Task 写出)时抛出 IllegalArgumentException
+         */
+        public static Graph readFrom(GraphFile file) {
+            requireNotNull(file);
+            Vertex[] vertices = new Vertex[file.size()];
+            Graph graph = new Graph();
+            for (int index : file.topologicalSort()) {
+                String name = file.getName(index);
+                if (name == null) {
+                    throw new IllegalArgumentException("vertex " + index + " has no name");
+                }
+                vertices[index] = new Vertex(name);
+                if (!graph.addVertex(vertices[index])) {
+                    throw new IllegalArgumentException("duplicate vertex name: " + name);
+                }
+                for (int offset = file.prevBegin(index), end = file.prevEnd(index); offset < end; offset++) {
+                    graph.addEdge(vertices[file.prev(offset)], vertices[index]);
+                }
+            }
+            return graph;
+        }
+    }
+
+    /**
+     * 对 frontier[begin, end) 的所有出边做入度递减，归零的顶点通过 tail 原子地追加到下一层
+     */
+    private static class LayerTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final IndexedGraph graph;
+        private final AtomicIntegerArray degrees;
+        private final int[] frontier;
+        private final AtomicInteger tail;
+        private final int begin;
+        private final int end;
+
+        LayerTask(IndexedGraph graph, AtomicIntegerArray degrees, int[] frontier, AtomicInteger tail, int begin, int end) {
+            this.graph = graph;
+            this.degrees = degrees;
+            this.frontier = frontier;
+            this.tail = tail;
+            this.begin = begin;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - begin > LAYER_SPLIT_SIZE) {
+                int middle = (begin + end) >>> 1;
+                invokeAll(new LayerTask(graph, degrees, frontier, tail, begin, middle),
+                        new LayerTask(graph, degrees, frontier, tail, middle, end));
+                return;
+            }
+            for (int i = begin; i < end; i++) {
+                int vertex = frontier[i];
+                for (int offset = graph.nextOffsets[vertex]; offset < graph.nextOffsets[vertex + 1]; offset++) {
+                    int next = graph.nexts[offset];
+                    if (degrees.decrementAndGet(next) == 0) {
+                        frontier[tail.getAndIncrement()] = next;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Graph 的数组快照：顶点按稠密下标编号，出边/入边以 CSR int[] 存储
+     */
+    private static class IndexedGraph {
+        private final Vertex[] vertices;
+        private final int[] nextOffsets;
+        private final int[] nexts;
+        private final int[] prevOffsets;
+        private final int[] prevs;
+
+        IndexedGraph(Set<Vertex> vertexSet, Set<Edge> edgeSet) {
+            vertices = vertexSet.toArray(new Vertex[0]);
+            Map<Vertex, Integer> indexMap = new HashMap<>(vertices.length * 2);
+            for (int i = 0; i < vertices.length; i++) {
+                indexMap.put(vertices[i], i);
+            }
+            int[] froms = new int[edgeSet.size()];
+            int[] tos = new int[edgeSet.size()];
+            int edgeCount = 0;
+            for (Edge edge : edgeSet) {
+                Integer from = indexMap.get(edge.getFrom());
+                Integer to = indexMap.get(edge.getTo());
+                if (from != null && to != null) {
+                    froms[edgeCount] = from;
+                    tos[edgeCount] = to;
+                    edgeCount++;
+                }
+            }
+            nextOffsets = new int[vertices.length + 1];
+            prevOffsets = new int[vertices.length + 1];
+            for (int i = 0; i < edgeCount; i++) {
+                nextOffsets[froms[i] + 1]++;
+                prevOffsets[tos[i] + 1]++;
+            }
+            for (int i = 0; i < vertices.length; i++) {
+                nextOffsets[i + 1] += nextOffsets[i];
+                prevOffsets[i + 1] += prevOffsets[i];
+            }
+            nexts = new int[edgeCount];
+            prevs = new int[edgeCount];
+            int[] nextCursors = Arrays.copyOf(nextOffsets, vertices.length);
+            int[] prevCursors = Arrays.copyOf(prevOffsets, vertices.length);
+            for (int i = 0; i < edgeCount; i++) {
+                nexts[nextCursors[froms[i]]++] = tos[i];
+                prevs[prevCursors[tos[i]]++] = froms[i];
+            }
+        }
+
+        /**
+         * Kahn 结束后剩余入度非零的顶点都至少有一个同样剩余的前驱，沿前驱回溯必然回到走过的顶点，由此取出一个环
+         */
+        List<Vertex> findCycle(int[] degrees) {
+            int start = 0;
+            while (degrees[start] == 0) {
+                start++;
+            }
+            int[] visitedAt = new int[vertices.length];
+            Arrays.fill(visitedAt, -1);
+            int[] path = new int[vertices.length];
+            int length = 0;
+            int vertex = start;
+            while (visitedAt[vertex] < 0) {
+                visitedAt[vertex] = length;
+                path[length++] = vertex;
+                int offset = prevOffsets[vertex];
+                while (degrees[prevs[offset]] == 0) {
+                    offset++;
+                }
+                vertex = prevs[offset];
+            }
+            List<Vertex> cycle = new ArrayList<>(length - visitedAt[vertex]);
+            for (int i = length - 1; i >= visitedAt[vertex]; i--) {
+                cycle.add(vertices[path[i]]);
+            }
+            return cycle;
+        }
+    }
+
+    /**
+     * 拓扑排序遇到环时抛出，携带环上的顶点(按边的方向排列)
+     */
+    public static class CycleException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<Vertex> vertices;
+
+        public CycleException(List<Vertex> vertices) {
+            super("cycle detected: " + vertices);
+            this.vertices = vertices;
+        }
+
+        public List<Vertex> getVertices() {
+            return vertices;
+        }
     }
 }
@@ -0,0 +1,542 @@
+package com.wts.dag.scheduler;
+
+import cn.hutool.log.StaticLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 并行调度器：为每个任务维护未完成前驱计数，计数归零即提交到线程池，
+ * 任务完成后递减后继的计数，整体调度开销 O(V+E)
+ *
+ * @Package com.wts.dag.scheduler
+ */
+public class ParallelScheduler {
+
+    //任务级超时计时器，只有设置了 timeoutMillis 的任务才会用到
+    private static final ScheduledExecutorService TIMER = createTimer();
+
+    private final ExecutorService executorService;
+    private SchedulingPolicy policy = SchedulingPolicy.FIFO;
+    private TaskCostModel costModel = new TaskCostModel();
+    private SchedulerListener listener;
+    //字节，0 表示不限制
+    private long memoryBudget;
+    //整个 DAG 的执行时限，0 表示不限制
+    private long timeoutMillis;
+    private ResultCache resultCache;
+    private CompletionLog completionLog;
+
+    public ParallelScheduler(ExecutorService executorService) {
+        MyDAG.requireNotNull(executorService);
+        this.executorService = executorService;
+    }
+
+    public SchedulingPolicy getPolicy() {
+        return policy;
+    }
+
+    public void setPolicy(SchedulingPolicy policy) {
+        MyDAG.requireNotNull(policy);
+        this.policy = policy;
+    }
+
+    public TaskCostModel getCostModel() {
+        return costModel;
+    }
+
+    public void setCostModel(TaskCostModel costModel) {
+        MyDAG.requireNotNull(costModel);
+        this.costModel = costModel;
+    }
+
+    public SchedulerListener getListener() {
+        return listener;
+    }
+
+    /**
+     * 设置调度事件监听，例如 SchedulerTrace；为 null 时不产生任何埋点开销
+     */
+    public void setListener(SchedulerListener listener) {
+        this.listener = listener;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * 设置全局内存预算(字节)：同时执行的任务 estimatedMemory() 之和不超过该值，0 表示不限制
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        if (memoryBudget < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.memoryBudget = memoryBudget;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * 设置整个 DAG 的执行时限，超时后停止派发、通知执行中的任务并抛出 TimeoutException
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.timeoutMillis = unit.toMillis(timeout);
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * 设置结果缓存：指纹命中的任务不执行，直接视为已完成，后继照常就绪
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public CompletionLog getCompletionLog() {
+        return completionLog;
+    }
+
+    /**
+     * 设置完成日志：日志中已记录的任务 id 视为已完成(进程重启后只执行剩余部分)，每个成功的任务都追加到日志
+     */
+    public void setCompletionLog(CompletionLog completionLog) {
+        this.completionLog = completionLog;
+    }
+
+    public void schedule(Digraph digraph) {
+        schedule(digraph.compile());
+    }
+
+    public void schedule(CompiledDigraph graph) {
+        schedule(graph, new CancellationToken());
+    }
+
+    /**
+     * 任务失败、超时或外部调用 token.cancel() 时，不再派发任何新任务(失败任务的后代全部跳过)，
+     * 执行中的任务可通过 CancellationToken.current() 感知并提前返回
+     */
+    public void schedule(CompiledDigraph graph, CancellationToken token) {
+        MyDAG.requireNoneNull(graph, token);
+        new Run(graph, token).execute();
+    }
+
+    private static ScheduledExecutorService createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "parallel-scheduler-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    private class Run {
+        private final CompiledDigraph graph;
+        //每个任务尚未完成的前驱数
+        private final AtomicIntegerArray pendings;
+        //失败、超时和外部取消都通过它传播，原因即 schedule 抛出的异常
+        private final CancellationToken token;
+        private final CountDownLatch latch;
+        //FIFO 策略下为 null，直接按就绪顺序提交
+        private final ReadyQueue readyQueue;
+        private final SchedulerListener listener = GuardedSchedulerListener.of(ParallelScheduler.this.listener);
+        private final ResultCache resultCache = ParallelScheduler.this.resultCache;
+        private final CompletionLog completionLog = ParallelScheduler.this.completionLog;
+        //未设置内存预算时为 null
+        private final MemoryBudget budget;
+        //外部取消时释放等待线程，调度结束后从 token 注销
+        private final Runnable abortOnCancel = this::abort;
+
+        Run(CompiledDigraph graph, CancellationToken token) {
+            //有环时计数永远不会归零，提前拒绝
+            int[] order = graph.topologicalSort();
+            this.graph = graph;
+            this.pendings = new AtomicIntegerArray(graph.size());
+            for (int i = 0; i < graph.size(); i++) {
+                pendings.set(i, graph.inDegree(i));
+            }
+            this.latch = new CountDownLatch(graph.size());
+            this.token = token;
+            long[] priorities = policy == SchedulingPolicy.CRITICAL_PATH ? bottomLevels(order) : null;
+            if (memoryBudget > 0) {
+                long[] memories = new long[graph.size()];
+                for (int i = 0; i < graph.size(); i++) {
+                    memories[i] = Math.max(0, graph.getTask(i).estimatedMemory());
+                }
+                //准入队列本身按优先级排序，不再需要 readyQueue
+                this.budget = new MemoryBudget(memoryBudget, memories, priorities);
+                this.readyQueue = null;
+            } else {
+                this.budget = null;
+                this.readyQueue = priorities != null ? new ReadyQueue(priorities) : null;
+            }
+        }
+
+        /**
+         * 逆拓扑序计算 bottom-level：自身预估耗时 + 后继中最大的 bottom-level
+         */
+        private long[] bottomLevels(int[] order) {
+            long[] levels = new long[graph.size()];
+            for (int i = order.length - 1; i >= 0; i--) {
+                int index = order[i];
+                long max = 0;
+                for (int offset = graph.nextBegin(index), end = graph.nextEnd(index); offset < end; offset++) {
+                    max = Math.max(max, levels[graph.next(offset)]);
+                }
+                levels[index] = max + Math.max(0, costModel.estimate(graph.getTask(index)));
+            }
+            return levels;
+        }
+
+        void execute() {
+            if (listener != null) {
+                listener.onScheduleStart(graph, System.nanoTime());
+            }
+            token.onCancel(abortOnCancel);
+            try {
+                for (int i = 0; i < graph.size(); i++) {
+                    if (graph.inDegree(i) == 0) {
+                        dispatch(i);
+                    }
+                }
+                if (timeoutMillis <= 0) {
+                    latch.await();
+                } else if (!latch.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    token.cancel(new TimeoutException("schedule timed out after " + timeoutMillis + "ms"));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                token.cancel(e);
+                throw new RuntimeException(e);
+            } finally {
+                token.removeOnCancel(abortOnCancel);
+            }
+            if (listener != null) {
+                listener.onScheduleEnd(System.nanoTime());
+            }
+            if (completionLog != null) {
+                try {
+                    completionLog.flush();
+                } catch (IOException e) {
+                    token.cancel(new UncheckedIOException(e));
+                }
+            }
+            Throwable throwable = token.getReason();
+            if (throwable != null) {
+                throw throwable instanceof RuntimeException ? (RuntimeException) throwable : new RuntimeException(throwable);
+            }
+        }
+
+        private void dispatch(int index) {
+            if (token.isCancelled()) {
+                return;
+            }
+            if (skippable(index)) {
+                complete(index);
+                return;
+            }
+            ready(index);
+        }
+
+        /**
+         * 已执行过或结果缓存命中的任务无需执行
+         */
+        private boolean skippable(int index) {
+            Task task = graph.getTask(index);
+            if (task.hasExecuted()) {
+                return true;
+            }
+            if (completionLog != null && loggedCompleted(task)) {
+                return true;
+            }
+            if (resultCache == null) {
+                return false;
+            }
+            String key = ResultCache.keyOf(task);
+            if (key != null && resultCache.contains(key)) {
+                task.markExecuted();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 融合单元逐个检查成员，上次已完成的成员标记为已执行，单元执行时只跑剩下的成员
+         */
+        private boolean loggedCompleted(Task task) {
+            for (Task member : loggedTasks(task)) {
+                if (!member.hasExecuted() && completionLog.isCompleted(member.getId())) {
+                    member.markExecuted();
+                }
+            }
+            return task.hasExecuted();
+        }
+
+        private void ready(int index) {
+            if (listener != null) {
+                listener.onReady(index, System.nanoTime());
+            }
+            if (budget != null) {
+                budget.offer(index);
+                submitAdmitted();
+                return;
+            }
+            if (readyQueue != null) {
+                readyQueue.offer(index);
+            }
+            submit(index);
+        }
+
+        private void submitAdmitted() {
+            for (int index : budget.admit()) {
+                submit(index);
+            }
+        }
+
+        private void submit(final int index) {
+            try {
+                executorService.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        //优先级模式下每次提交只代表"有一个任务就绪"，真正执行的是此刻优先级最高的那个
+                        int target = readyQueue != null ? readyQueue.poll() : index;
+                        if (target >= 0) {
+                            runTask(target);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                fail(e);
+            }
+        }
+
+        private void runTask(final int index) {
+            if (token.isCancelled()) {
+                return;
+            }
+            final Task task = graph.getTask(index);
+            final ScheduledFuture<?> timer = startTimer(task);
+            final long start = System.nanoTime();
+            if (listener != null) {
+                listener.onStart(index, start);
+            }
+            CancellationToken previous = CancellationToken.bind(token);
+            try {
+                if (task instanceof AsyncExecutor) {
+                    CompletableFuture<Boolean> future;
+                    try {
+                        future = ((AsyncExecutor) task).executeAsync();
+                    } catch (Throwable e) {
+                        stopTimer(timer);
+                        finish(index, start, null, e);
+                        return;
+                    }
+                    //后继在 future 完成的线程上派发，不阻塞线程池
+                    future.whenComplete((success, e) -> {
+                        stopTimer(timer);
+                        finish(index, start, success, e);
+                    });
+                    return;
+                }
+                boolean success;
+                try {
+                    success = task.execute();
+                } catch (Throwable e) {
+                    stopTimer(timer);
+                    finish(index, start, null, e);
+                    return;
+                }
+                stopTimer(timer);
+                finish(index, start, success, null);
+            } finally {
+                CancellationToken.restore(previous);
+            }
+        }
+
+        private ScheduledFuture<?> startTimer(final Task task) {
+            long timeout = task.timeoutMillis();
+            if (timeout <= 0) {
+                return null;
+            }
+            return TIMER.schedule(() -> {
+                token.cancel(new TimeoutException("Task id: [" + task.getId() + "], task name: [" + task.getName()
+                        + "] timed out after " + timeout + "ms"));
+            }, timeout, TimeUnit.MILLISECONDS);
+        }
+
+        private void stopTimer(ScheduledFuture<?> timer) {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+        }
+
+        /**
+         * 记录耗时、通知监听、归还内存预算等附带操作出错时也一定会走到 complete 或 fail，否则 latch 永远不会归零
+         */
+        private void finish(int index, long start, Boolean success, Throwable e) {
+            long end = System.nanoTime();
+            Throwable failure = e;
+            if (failure == null && (success == null || !success)) {
+                failure = new TaskFailedException(graph.getTask(index), null);
+            }
+            try {
+                costModel.record(graph.getTask(index), end - start);
+                if (listener != null) {
+                    listener.onEnd(index, end, failure == null);
+                }
+                if (budget != null) {
+                    budget.release(index);
+                    submitAdmitted();
+                }
+            } catch (Throwable t) {
+                if (failure == null) {
+                    failure = t;
+                }
+            } finally {
+                if (failure != null) {
+                    fail(failure);
+                } else {
+                    succeed(index);
+                }
+            }
+        }
+
+        private void succeed(int index) {
+            Task task = graph.getTask(index);
+            task.markExecuted();
+            if (completionLog != null) {
+                //日志已关闭或刷盘线程失败时无法再记录进度，让本次调度失败而不是挂起
+                try {
+                    for (Task logged : loggedTasks(task)) {
+                        if (logged.getId() != null) {
+                            completionLog.append(logged.getId());
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    fail(e);
+                    return;
+                }
+            }
+            if (resultCache != null) {
+                String key = ResultCache.keyOf(task);
+                if (key != null) {
+                    //缓存只是加速手段，写入失败不影响本次调度，下次重新执行即可
+                    try {
+                        resultCache.put(key);
+                    } catch (RuntimeException e) {
+                        StaticLog.warn(e, "Failed to cache result of task id: [{}], task name: [{}]",
+                                task.getId(), task.getName());
+                    }
+                }
+            }
+            complete(index);
+        }
+
+        //融合单元本身没有 id，完成记录按成员的 id 记
+        private List<Task> loggedTasks(Task task) {
+            return task instanceof FusedTask ? ((FusedTask) task).getMembers() : Collections.singletonList(task);
+        }
+
+        /**
+         * 释放后继；可跳过的后继就地继续释放，用显式栈代替递归，长链全部命中缓存时也不会栈溢出
+         */
+        private void complete(int index) {
+            int[] stack = null;
+            int top = 0;
+            while (true) {
+                latch.countDown();
+                for (int offset = graph.nextBegin(index), end = graph.nextEnd(index); offset < end; offset++) {
+                    int next = graph.next(offset);
+                    if (pendings.decrementAndGet(next) != 0 || token.isCancelled()) {
+                        continue;
+                    }
+                    if (!skippable(next)) {
+                        ready(next);
+                        continue;
+                    }
+                    if (stack == null) {
+                        stack = new int[8];
+                    } else if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, top << 1);
+                    }
+                    stack[top++] = next;
+                }
+                if (top == 0) {
+                    return;
+                }
+                index = stack[--top];
+            }
+        }
+
+        //token 上其他回调抛异常时也要释放等待线程，abort 可以重复调用
+        private void fail(Throwable e) {
+            try {
+                token.cancel(e);
+            } finally {
+                abort();
+            }
+        }
+
+        //取消后不再派发新任务，直接释放等待线程，由 token.onCancel 触发
+        private void abort() {
+            while (latch.getCount() > 0) {
+                latch.countDown();
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        Digraph digraph = new Digraph();
+        Task task1 = new Task(1L, "task1", 0);
+        Task task2 = new Task(2L, "task2", 0);
+        Task task3 = new Task(3L, "task3", 0);
+        Task task4 = new Task(4L, "task4", 0);
+        Task task5 = new Task(5L, "task5", 0);
+        Task task6 = new Task(6L, "task6", 0);
+        digraph.addTask(task1);
+        digraph.addTask(task2);
+        digraph.addTask(task3);
+        digraph.addTask(task4);
+        digraph.addTask(task5);
+        digraph.addTask(task6);
+        digraph.addEdge(task1, task2);
+        digraph.addEdge(task1, task5);
+        digraph.addEdge(task6, task2);
+        digraph.addEdge(task2, task3);
+        digraph.addEdge(task2, task4);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            ParallelScheduler scheduler = new ParallelScheduler(executorService);
+            scheduler.setPolicy(SchedulingPolicy.CRITICAL_PATH);
+            SchedulerTrace trace = new SchedulerTrace();
+            scheduler.setListener(trace);
+            scheduler.schedule(digraph);
+            System.out.println(trace.report());
+        } finally {
+            executorService.shutdown();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.wts.dag.scheduler;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * AsyncExecutor.of 的实现：沿用被包装 Task 的 id、名称和各项预估，
+ * 调度时把 execute() 放到指定线程池上执行，完成状态与被包装的 Task 同步
+ *
+ * @Package com.wts.dag.scheduler
+ */
+class PooledTask extends Task implements AsyncExecutor {
+
+    private final Task task;
+    private final java.util.concurrent.Executor pool;
+
+    PooledTask(Task task, java.util.concurrent.Executor pool) {
+        super(task.getId(), task.getName(), 0);
+        this.task = task;
+        this.pool = pool;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> executeAsync() {
+        return CompletableFuture.supplyAsync(task::execute, pool);
+    }
+
+    @Override
+    public boolean execute() {
+        return task.execute();
+    }
+
+    @Override
+    public boolean hasExecuted() {
+        return task.hasExecuted();
+    }
+
+    @Override
+    void markExecuted() {
+        task.markExecuted();
+    }
+
+    @Override
+    public long estimatedCost() {
+        return task.estimatedCost();
+    }
+
+    @Override
+    public long estimatedMemory() {
+        return task.estimatedMemory();
+    }
+
+    @Override
+    public long timeoutMillis() {
+        return task.timeoutMillis();
+    }
+
+    @Override
+    public String fingerprint() {
+        return task.fingerprint();
+    }
+}
@@ -0,0 +1,72 @@
+package com.wts.dag.scheduler;
+
+import java.util.Arrays;
+
+/**
+ * 就绪任务优先队列：存放任务编号的二叉大顶堆，优先级相同时编号小的先出，避免装箱
+ *
+ * @Package com.wts.dag.scheduler
+ */
+class ReadyQueue {
+
+    private final long[] priorities;
+    private int[] heap;
+    private int size;
+
+    ReadyQueue(long[] priorities) {
+        this.priorities = priorities;
+        this.heap = new int[16];
+    }
+
+    synchronized void offer(int index) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size << 1);
+        }
+        int child = size++;
+        while (child > 0) {
+            int parent = (child - 1) >>> 1;
+            if (!higher(index, heap[parent])) {
+                break;
+            }
+            heap[child] = heap[parent];
+            child = parent;
+        }
+        heap[child] = index;
+    }
+
+    /**
+     * 取出优先级最高的任务编号，队列为空时返回 -1
+     */
+    synchronized int poll() {
+        if (size == 0) {
+            return -1;
+        }
+        int result = heap[0];
+        int last = heap[--size];
+        int parent = 0;
+        while (true) {
+            int child = (parent << 1) + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && higher(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!higher(heap[child], last)) {
+                break;
+            }
+            heap[parent] = heap[child];
+            parent = child;
+        }
+        heap[parent] = last;
+        return result;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private boolean higher(int a, int b) {
+        return priorities[a] > priorities[b] || (priorities[a] == priorities[b] && a < b);
+    }
+}
@@ -0,0 +1,21 @@
+package com.wts.dag.scheduler;
+
+/**
+ * 任务结果缓存：key 由任务 id 和 Executor.fingerprint() 组成，命中说明该任务在相同输入下已经成功执行过
+ *
+ * @Package com.wts.dag.scheduler
+ */
+public interface ResultCache {
+
+    boolean contains(String key);
+
+    void put(String key);
+
+    static String keyOf(Task task) {
+        String fingerprint = task.fingerprint();
+        if (fingerprint == null) {
+            return null;
+        }
+        return (task.getId() != null ? String.valueOf(task.getId()) : task.getName()) + "/" + fingerprint;
+    }
+}
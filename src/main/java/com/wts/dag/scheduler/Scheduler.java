@@ -1,40 +1,32 @@
 package com.wts.dag.scheduler;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
-
 public class Scheduler {
     public void schedule(Digraph digraph) {
-        while (true) {
-            List<Task> todo = new ArrayList<Task>();
-            for (Task task : digraph.getTasks()) {
-                if (!task.hasExecuted()) {
-                    Set<Task> prevs = digraph.getMap().get(task);
-                    if (prevs != null && !prevs.isEmpty()) {
-                        boolean toAdd = true;
-                        for (Task task1 : prevs) {
-                            if (!task1.hasExecuted()) {
-                                toAdd = false;
-                                break;
-                            }
-                        }
-                        if (toAdd) {
-                            todo.add(task);
-                        }
-                    } else {
-                        todo.add(task);
-                    }
-                }
+        schedule(digraph.compile());
+    }
+
+    public void schedule(CompiledDigraph graph) {
+        int size = graph.size();
+        int[] degrees = new int[size];
+        int[] queue = new int[size];
+        int tail = 0;
+        for (int i = 0; i < size; i++) {
+            degrees[i] = graph.inDegree(i);
+            if (degrees[i] == 0) {
+                queue[tail++] = i;
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int index = queue[head];
+            Task task = graph.getTask(index);
+            if (!task.hasExecuted() && !task.execute()) {
+                throw new RuntimeException();
             }
-            if (!todo.isEmpty()) {
-                for (Task task : todo) {
-                    if (!task.execute()) {
-                        throw new RuntimeException();
-                    }
+            for (int offset = graph.nextBegin(index), end = graph.nextEnd(index); offset < end; offset++) {
+                int next = graph.next(offset);
+                if (--degrees[next] == 0) {
+                    queue[tail++] = next;
                 }
-            } else {
-                break;
             }
         }
     }
@@ -0,0 +1,28 @@
+package com.wts.dag.scheduler;
+
+/**
+ * 调度事件监听，时间均为 System.nanoTime()，index 为任务在 CompiledDigraph 中的编号。
+ * 回调在调度线程/工作线程上同步执行，实现需要线程安全且足够轻量
+ *
+ * @Package com.wts.dag.scheduler
+ */
+public interface SchedulerListener {
+
+    default void onScheduleStart(CompiledDigraph graph, long nanos) {
+    }
+
+    /**
+     * 所有前驱已完成
+     */
+    default void onReady(int index, long nanos) {
+    }
+
+    default void onStart(int index, long nanos) {
+    }
+
+    default void onEnd(int index, long nanos, boolean success) {
+    }
+
+    default void onScheduleEnd(long nanos) {
+    }
+}
@@ -0,0 +1,245 @@
+package com.wts.dag.scheduler;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 长期运行的调度会话：执行过程中可以持续 addTask/addEdge，新任务一旦没有未完成的前驱就立即派发。
+ * 内部 Digraph 只保留未完成的任务，任务完成后即从图中删除(O(degree))，
+ * 所以"前驱集合为空"即代表就绪，不需要全局扫描
+ *
+ * @Package com.wts.dag.scheduler
+ */
+public class SchedulerSession implements AutoCloseable {
+
+    private final ExecutorService executorService;
+    private final Object lock = new Object();
+    //未完成的任务及其依赖
+    private final Digraph digraph = new Digraph(true);
+    //已提交到线程池的任务
+    private final Set<Task> running = new HashSet<Task>();
+    private Throwable failure;
+    private boolean closed;
+
+    public SchedulerSession(ExecutorService executorService) {
+        MyDAG.requireNotNull(executorService);
+        this.executorService = executorService;
+    }
+
+    /**
+     * 添加任务及其前驱；已完成的前驱视为已满足，没有未完成前驱时立即派发
+     */
+    public void addTask(Task task, Task... prevs) {
+        MyDAG.requireNoneNull(task, prevs);
+        synchronized (lock) {
+            checkOpen();
+            for (Task prev : prevs) {
+                if (!digraph.contains(prev) && !prev.hasExecuted()) {
+                    throw new IllegalArgumentException("unknown prev task");
+                }
+            }
+            digraph.addTask(task);
+            try {
+                for (Task prev : prevs) {
+                    if (digraph.contains(prev)) {
+                        digraph.addEdge(task, prev);
+                    }
+                }
+            } catch (RuntimeException e) {
+                //半加入的任务不会被派发，留在图里会让 await 永远等不到
+                digraph.remove(task);
+                throw e;
+            }
+        }
+        dispatchIfReady(task);
+    }
+
+    /**
+     * 给尚未开始执行的任务追加依赖，task 已在执行时抛出 IllegalStateException
+     */
+    public void addEdge(Task task, Task prev) {
+        MyDAG.requireNoneNull(task, prev);
+        synchronized (lock) {
+            checkOpen();
+            if (!digraph.contains(task)) {
+                throw new IllegalArgumentException("unknown task");
+            }
+            if (running.contains(task)) {
+                throw new IllegalStateException("task already dispatched");
+            }
+            if (digraph.contains(prev)) {
+                digraph.addEdge(task, prev);
+            } else if (!prev.hasExecuted()) {
+                throw new IllegalArgumentException("unknown prev task");
+            }
+        }
+    }
+
+    /**
+     * 把一个 DAG 片段整体加入会话，片段内的依赖关系保持不变；
+     * 片段中有已存在的任务或依赖成环时抛出 IllegalArgumentException，会话保持不变
+     */
+    public void addGraph(Digraph fragment) {
+        MyDAG.requireNotNull(fragment);
+        List<Task> candidates = new ArrayList<Task>(fragment.getTasks());
+        synchronized (lock) {
+            checkOpen();
+            for (Task task : candidates) {
+                if (digraph.contains(task)) {
+                    throw new IllegalArgumentException("duplicate task");
+                }
+            }
+            for (Task task : candidates) {
+                digraph.addTask(task);
+            }
+            try {
+                for (Task task : candidates) {
+                    for (Task prev : fragment.getPrevs(task)) {
+                        digraph.addEdge(task, prev);
+                    }
+                }
+            } catch (RuntimeException e) {
+                //片段内的任务全部回滚，避免部分任务永远不会被派发
+                for (Task task : candidates) {
+                    digraph.remove(task);
+                }
+                throw e;
+            }
+        }
+        for (Task task : candidates) {
+            dispatchIfReady(task);
+        }
+    }
+
+    /**
+     * 等待当前已加入的任务全部完成；有任务失败时抛出该失败
+     */
+    public void await() throws InterruptedException {
+        synchronized (lock) {
+            while (failure == null && !digraph.getTasks().isEmpty()) {
+                lock.wait();
+            }
+            rethrow();
+        }
+    }
+
+    /**
+     * 不再接受新任务，并等待已有任务完成；等待被中断时恢复中断标记并抛出 RuntimeException
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+        }
+        try {
+            await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void dispatchIfReady(final Task task) {
+        synchronized (lock) {
+            if (failure != null || !digraph.contains(task) || running.contains(task)
+                    || !digraph.getPrevs(task).isEmpty()) {
+                return;
+            }
+            running.add(task);
+        }
+        if (task.hasExecuted()) {
+            complete(task);
+            return;
+        }
+        try {
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (task instanceof AsyncExecutor) {
+                        try {
+                            ((AsyncExecutor) task).executeAsync().whenComplete((success, e) -> finish(task, success, e));
+                        } catch (Throwable e) {
+                            fail(e);
+                        }
+                        return;
+                    }
+                    try {
+                        finish(task, task.execute(), null);
+                    } catch (Throwable e) {
+                        fail(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            fail(e);
+        }
+    }
+
+    private void finish(Task task, Boolean success, Throwable e) {
+        if (e != null) {
+            fail(e);
+        } else if (success == null || !success) {
+            fail(new TaskFailedException(task, null));
+        } else {
+            task.markExecuted();
+            complete(task);
+        }
+    }
+
+    private void complete(Task task) {
+        List<Task> nexts;
+        synchronized (lock) {
+            nexts = new ArrayList<Task>(digraph.getNexts(task));
+            digraph.remove(task);
+            running.remove(task);
+            if (digraph.getTasks().isEmpty()) {
+                lock.notifyAll();
+            }
+        }
+        for (Task next : nexts) {
+            dispatchIfReady(next);
+        }
+    }
+
+    private void fail(Throwable e) {
+        synchronized (lock) {
+            if (failure == null) {
+                failure = e;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("session closed");
+        }
+        rethrow();
+    }
+
+    private void rethrow() {
+        if (failure != null) {
+            throw failure instanceof RuntimeException ? (RuntimeException) failure : new RuntimeException(failure);
+        }
+    }
+
+    public static void main(String[] args) {
+        ExecutorService executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try (SchedulerSession session = new SchedulerSession(executorService)) {
+            for (long batch = 0; batch < 3; batch++) {
+                Task head = new Task(batch * 10, "head" + batch, 0);
+                session.addTask(head);
+                for (long i = 1; i <= 3; i++) {
+                    session.addTask(new Task(batch * 10 + i, "branch" + batch + "-" + i, 0), head);
+                }
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+}
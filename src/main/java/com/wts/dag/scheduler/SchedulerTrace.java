@@ -0,0 +1,180 @@
+package com.wts.dag.scheduler;
+
+import cn.hutool.json.JSONUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 记录每个任务的就绪、开始、结束时间和执行线程。
+ * 数组在调度开始时按任务数一次性分配，每个槽位只由执行该任务的线程写入，不需要加锁；
+ * 调度结束后可以输出实际关键路径、线程利用率以及 Chrome trace(chrome://tracing)格式的时间线
+ *
+ * @Package com.wts.dag.scheduler
+ */
+public class SchedulerTrace implements SchedulerListener {
+
+    /**
+     * nanoTime 可以是任意值(包括 0 和负数)，未发生的事件用 Long.MIN_VALUE 标记
+     */
+    private static final long UNSET = Long.MIN_VALUE;
+
+    private CompiledDigraph graph;
+    private long scheduleStart;
+    private long scheduleEnd = UNSET;
+    private long[] readyTimes;
+    private long[] startTimes;
+    private long[] endTimes;
+    private long[] workers;
+
+    @Override
+    public void onScheduleStart(CompiledDigraph graph, long nanos) {
+        this.graph = graph;
+        this.scheduleStart = nanos;
+        this.scheduleEnd = UNSET;
+        this.readyTimes = new long[graph.size()];
+        this.startTimes = new long[graph.size()];
+        this.endTimes = new long[graph.size()];
+        this.workers = new long[graph.size()];
+        Arrays.fill(readyTimes, UNSET);
+        Arrays.fill(startTimes, UNSET);
+        Arrays.fill(endTimes, UNSET);
+    }
+
+    @Override
+    public void onReady(int index, long nanos) {
+        readyTimes[index] = nanos;
+    }
+
+    @Override
+    public void onStart(int index, long nanos) {
+        startTimes[index] = nanos;
+        workers[index] = Thread.currentThread().getId();
+    }
+
+    @Override
+    public void onEnd(int index, long nanos, boolean success) {
+        endTimes[index] = nanos;
+    }
+
+    @Override
+    public void onScheduleEnd(long nanos) {
+        this.scheduleEnd = nanos;
+    }
+
+    public long getMakespan() {
+        return scheduleEnd - scheduleStart;
+    }
+
+    /**
+     * 实际关键路径：从最后结束的任务出发，每次回溯到结束最晚的前驱
+     */
+    public List<Task> criticalPath() {
+        checkFinished();
+        int last = -1;
+        for (int i = 0; i < graph.size(); i++) {
+            if (endTimes[i] != UNSET && (last < 0 || endTimes[i] > endTimes[last])) {
+                last = i;
+            }
+        }
+        List<Task> path = new ArrayList<Task>();
+        while (last >= 0) {
+            path.add(graph.getTask(last));
+            int prev = -1;
+            for (int offset = graph.prevBegin(last), end = graph.prevEnd(last); offset < end; offset++) {
+                int candidate = graph.prev(offset);
+                if (prev < 0 || endTimes[candidate] > endTimes[prev]) {
+                    prev = candidate;
+                }
+            }
+            last = prev;
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * 线程利用率：所有任务执行时间之和 / (总耗时 * 参与执行的线程数)
+     */
+    public double utilization() {
+        checkFinished();
+        long busy = 0;
+        Set<Long> threads = new HashSet<Long>();
+        for (int i = 0; i < graph.size(); i++) {
+            if (endTimes[i] != UNSET && startTimes[i] != UNSET) {
+                busy += endTimes[i] - startTimes[i];
+                threads.add(workers[i]);
+            }
+        }
+        long capacity = getMakespan() * threads.size();
+        return capacity <= 0 ? 0 : (double) busy / capacity;
+    }
+
+    public String report() {
+        checkFinished();
+        long dependencyWait = 0;
+        long queueWait = 0;
+        long running = 0;
+        int executed = 0;
+        for (int i = 0; i < graph.size(); i++) {
+            if (startTimes[i] == UNSET || endTimes[i] == UNSET) {
+                continue;
+            }
+            executed++;
+            dependencyWait += readyTimes[i] - scheduleStart;
+            queueWait += startTimes[i] - readyTimes[i];
+            running += endTimes[i] - startTimes[i];
+        }
+        StringBuilder builder = new StringBuilder();
+        builder.append("makespan: ").append(getMakespan() / 1000).append("us\n");
+        builder.append("executed tasks: ").append(executed).append('/').append(graph.size()).append('\n');
+        if (executed > 0) {
+            builder.append("avg dependency wait: ").append(dependencyWait / executed / 1000).append("us\n");
+            builder.append("avg queue wait: ").append(queueWait / executed / 1000).append("us\n");
+            builder.append("avg running: ").append(running / executed / 1000).append("us\n");
+        }
+        builder.append(String.format("utilization: %.2f%%%n", utilization() * 100));
+        builder.append("critical path:");
+        for (Task task : criticalPath()) {
+            builder.append(' ').append(task.getName());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Chrome trace event 格式，每个执行过的任务输出一个 complete("X")事件，时间单位微秒
+     */
+    public String toChromeTrace() {
+        checkFinished();
+        StringBuilder builder = new StringBuilder("{\"traceEvents\":[");
+        boolean first = true;
+        for (int i = 0; i < graph.size(); i++) {
+            if (startTimes[i] == UNSET || endTimes[i] == UNSET) {
+                continue;
+            }
+            if (!first) {
+                builder.append(',');
+            }
+            first = false;
+            Task task = graph.getTask(i);
+            builder.append("{\"name\":").append(JSONUtil.quote(String.valueOf(task.getName())))
+                    .append(",\"ph\":\"X\",\"pid\":1,\"tid\":").append(workers[i])
+                    .append(",\"ts\":").append((startTimes[i] - scheduleStart) / 1000)
+                    .append(",\"dur\":").append((endTimes[i] - startTimes[i]) / 1000)
+                    .append(",\"args\":{\"id\":").append(task.getId())
+                    .append(",\"queueWaitUs\":").append((startTimes[i] - readyTimes[i]) / 1000)
+                    .append("}}");
+        }
+        return builder.append("]}").toString();
+    }
+
+    private void checkFinished() {
+        if (graph == null || scheduleEnd == UNSET) {
+            throw new IllegalStateException("schedule not finished");
+        }
+    }
+}
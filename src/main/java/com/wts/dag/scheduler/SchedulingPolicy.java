@@ -0,0 +1,17 @@
+package com.wts.dag.scheduler;
+
+/**
+ * 就绪任务的派发顺序
+ *
+ * @Package com.wts.dag.scheduler
+ */
+public enum SchedulingPolicy {
+    /**
+     * 按就绪先后派发
+     */
+    FIFO,
+    /**
+     * 按 bottom-level(自身到出口的最长预估耗时)从大到小派发，优先推进关键路径
+     */
+    CRITICAL_PATH
+}
@@ -23,6 +23,9 @@ import java.util.regex.Pattern;
  */
 public class SupplierCodeFragmentRecognizer {
 
+    //与 test 中 supplierCodeJoiner 相同的连接符，未转义
+    private static final String SUPPLIER_CODE_JOINER_CHARS = ".—_-|";
+
     private final Pattern joinerPattern = Pattern.compile("[^a-zA-Z0-9]", Pattern.CASE_INSENSITIVE);
     private String supplierCodeJoiner;
     private Pattern supplierCodeFragmentPattern;
@@ -56,6 +59,15 @@ public class SupplierCodeFragmentRecognizer {
     }
 
 
+    /**
+     * 片段由字母、数字和连接符组成，其余字符(以及文本首尾)是片段边界
+     */
+    static boolean isFragmentChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || SUPPLIER_CODE_JOINER_CHARS.indexOf(c) >= 0;
+    }
+
+
     private Set<String> getSupplierCodeFragmentSet() {
         return supplierCodeFragmentSet;
     }
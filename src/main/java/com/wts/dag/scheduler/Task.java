@@ -6,6 +6,10 @@ public class Task implements Executor{
     private Long id;
     private String name;
     private int state;
+    private long estimatedCost = 1L;
+    private long estimatedMemory;
+    private long timeoutMillis;
+    private String fingerprint;
 
     public Task(Long id, String name, int state) {
         this.id = id;
@@ -22,4 +26,53 @@ public class Task implements Executor{
     public boolean hasExecuted() {
         return state == 1;
     }
+
+    //异步任务不经过 execute()，由调度器在 future 成功完成后标记
+    void markExecuted() {
+        state = 1;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long estimatedCost() {
+        return estimatedCost;
+    }
+
+    public void setEstimatedCost(long estimatedCost) {
+        this.estimatedCost = estimatedCost;
+    }
+
+    @Override
+    public long estimatedMemory() {
+        return estimatedMemory;
+    }
+
+    public void setEstimatedMemory(long estimatedMemory) {
+        this.estimatedMemory = estimatedMemory;
+    }
+
+    @Override
+    public long timeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
 }
@@ -0,0 +1,32 @@
+package com.wts.dag.scheduler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 任务耗时模型：按任务 id 记录实际耗时的指数滑动平均，同一个 DAG 多次运行后预估越来越准；
+ * 没有历史记录时退回到 Executor.estimatedCost()
+ *
+ * @Package com.wts.dag.scheduler
+ */
+public class TaskCostModel {
+
+    private final ConcurrentMap<Long, Long> estimates = new ConcurrentHashMap<>();
+
+    public long estimate(Task task) {
+        Long estimate = task.getId() == null ? null : estimates.get(task.getId());
+        return estimate != null ? estimate : task.estimatedCost();
+    }
+
+    public void record(Task task, long nanos) {
+        if (task.getId() == null) {
+            return;
+        }
+        //新值权重 1/4
+        estimates.merge(task.getId(), nanos, (old, latest) -> old - (old >> 2) + (latest >> 2));
+    }
+
+    public void clear() {
+        estimates.clear();
+    }
+}
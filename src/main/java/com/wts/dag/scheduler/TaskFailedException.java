@@ -0,0 +1,22 @@
+package com.wts.dag.scheduler;
+
+/**
+ * 携带失败的原始 Task，用于融合执行等一个调度单元包含多个 Task 的场景
+ *
+ * @Package com.wts.dag.scheduler
+ */
+public class TaskFailedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Task task;
+
+    public TaskFailedException(Task task, Throwable cause) {
+        super("Task id: [" + task.getId() + "], task name: [" + task.getName() + "] failed", cause);
+        this.task = task;
+    }
+
+    public Task getTask() {
+        return task;
+    }
+}
@@ -0,0 +1,119 @@
+package com.wts.dag.scheduler;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 虚拟线程执行模式：每个就绪任务跑在自己的虚拟线程上，适合 execute() 阻塞在 I/O 上的任务，
+ * 同时用信号量限制同时执行的任务数。
+ * 源码保持 1.8 兼容，通过 MethodHandle 查找 Executors.newVirtualThreadPerTaskExecutor，
+ * 运行在 21 以下的 JVM 上时退化为平台线程池
+ * <p>
+ * 用法：new ParallelScheduler(VirtualThreads.newExecutor(10000))
+ *
+ * @Package com.wts.dag.scheduler
+ */
+public final class VirtualThreads {
+
+    private static final MethodHandle NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = lookup();
+
+    private VirtualThreads() {
+    }
+
+    private static MethodHandle lookup() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * 每个任务一个虚拟线程，不限制并发
+     */
+    public static ExecutorService newExecutor() {
+        if (!isSupported()) {
+            return Executors.newCachedThreadPool();
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 每个任务一个虚拟线程，同时执行的任务数不超过 maxConcurrency；
+     * 超出的任务在自己的虚拟线程里等待许可，阻塞的虚拟线程只占用很少的堆内存。
+     * 不支持虚拟线程时退化为 maxConcurrency 个平台线程的固定线程池，超出的任务在队列中等待而不是各占一个线程
+     */
+    public static ExecutorService newExecutor(int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException();
+        }
+        if (!isSupported()) {
+            return Executors.newFixedThreadPool(maxConcurrency);
+        }
+        return new LimitedExecutorService(newExecutor(), maxConcurrency);
+    }
+
+    private static class LimitedExecutorService extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+
+        LimitedExecutorService(ExecutorService delegate, int maxConcurrency) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(maxConcurrency);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            MyDAG.requireNotNull(command);
+            delegate.execute(() -> {
+                permits.acquireUninterruptibly();
+                try {
+                    command.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.wts.dag.scheduler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 工作窃取调度器：基于 ForkJoinPool 的每线程双端队列。
+ * 任务完成后，第一个就绪的后继作为延续直接在当前线程上继续执行(输入数据仍在缓存里)，
+ * 其余就绪后继 fork 到当前线程的队列，由空闲线程窃取。适合单个任务只有微秒级的细粒度 DAG
+ *
+ * @Package com.wts.dag.scheduler
+ */
+public class WorkStealingScheduler {
+
+    private final ForkJoinPool pool;
+    private SchedulerListener listener;
+
+    public WorkStealingScheduler() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public WorkStealingScheduler(ForkJoinPool pool) {
+        MyDAG.requireNotNull(pool);
+        this.pool = pool;
+    }
+
+    public SchedulerListener getListener() {
+        return listener;
+    }
+
+    public void setListener(SchedulerListener listener) {
+        this.listener = listener;
+    }
+
+    public void schedule(Digraph digraph) {
+        schedule(digraph.compile());
+    }
+
+    public void schedule(CompiledDigraph graph) {
+        new Run(graph).execute();
+    }
+
+    private class Run {
+        private final CompiledDigraph graph;
+        private final AtomicIntegerArray pendings;
+        private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        private final CountDownLatch latch;
+        private final SchedulerListener listener = GuardedSchedulerListener.of(WorkStealingScheduler.this.listener);
+
+        Run(CompiledDigraph graph) {
+            graph.topologicalSort();
+            this.graph = graph;
+            this.pendings = new AtomicIntegerArray(graph.size());
+            for (int i = 0; i < graph.size(); i++) {
+                pendings.set(i, graph.inDegree(i));
+            }
+            this.latch = new CountDownLatch(graph.size());
+        }
+
+        void execute() {
+            if (listener != null) {
+                long now = System.nanoTime();
+                listener.onScheduleStart(graph, now);
+                for (int i = 0; i < graph.size(); i++) {
+                    if (graph.inDegree(i) == 0) {
+                        listener.onReady(i, now);
+                    }
+                }
+            }
+            for (int i = 0; i < graph.size(); i++) {
+                if (graph.inDegree(i) == 0) {
+                    pool.execute(new TaskAction(this, i));
+                }
+            }
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            if (listener != null) {
+                listener.onScheduleEnd(System.nanoTime());
+            }
+            Throwable throwable = failure.get();
+            if (throwable != null) {
+                throw throwable instanceof RuntimeException ? (RuntimeException) throwable : new RuntimeException(throwable);
+            }
+        }
+
+        /**
+         * 依次执行 index 及其延续链
+         */
+        void runFrom(int index) {
+            while (index >= 0) {
+                if (failure.get() != null) {
+                    abort();
+                    return;
+                }
+                Task task = graph.getTask(index);
+                if (!task.hasExecuted()) {
+                    if (listener != null) {
+                        listener.onStart(index, System.nanoTime());
+                    }
+                    if (task instanceof AsyncExecutor) {
+                        runAsync(index, (AsyncExecutor) task);
+                        return;
+                    }
+                    boolean success;
+                    Throwable error = null;
+                    try {
+                        success = task.execute();
+                    } catch (Throwable e) {
+                        success = false;
+                        error = e;
+                    }
+                    if (listener != null) {
+                        listener.onEnd(index, System.nanoTime(), success);
+                    }
+                    if (!success) {
+                        fail(error != null ? error : new TaskFailedException(task, null));
+                        return;
+                    }
+                    task.markExecuted();
+                }
+                index = release(index);
+            }
+        }
+
+        private void runAsync(final int index, AsyncExecutor task) {
+            try {
+                task.executeAsync().whenComplete((success, e) -> {
+                    if (listener != null) {
+                        listener.onEnd(index, System.nanoTime(), e == null && success != null && success);
+                    }
+                    if (e != null) {
+                        fail(e);
+                    } else if (success == null || !success) {
+                        fail(new TaskFailedException(graph.getTask(index), null));
+                    } else {
+                        graph.getTask(index).markExecuted();
+                        int next = release(index);
+                        if (next >= 0) {
+                            pool.execute(new TaskAction(this, next));
+                        }
+                    }
+                });
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * 递减后继计数，返回留给当前线程继续执行的后继，其余就绪后继 fork 出去；没有就绪后继时返回 -1
+         */
+        private int release(int index) {
+            latch.countDown();
+            int continuation = -1;
+            for (int offset = graph.nextBegin(index), end = graph.nextEnd(index); offset < end; offset++) {
+                int next = graph.next(offset);
+                if (pendings.decrementAndGet(next) == 0) {
+                    if (listener != null) {
+                        listener.onReady(next, System.nanoTime());
+                    }
+                    if (continuation < 0) {
+                        continuation = next;
+                    } else if (ForkJoinTask.getPool() == pool) {
+                        new TaskAction(this, next).fork();
+                    } else {
+                        pool.execute(new TaskAction(this, next));
+                    }
+                }
+            }
+            return continuation;
+        }
+
+        private void fail(Throwable e) {
+            failure.compareAndSet(null, e);
+            abort();
+        }
+
+        private void abort() {
+            while (latch.getCount() > 0) {
+                latch.countDown();
+            }
+        }
+    }
+
+    private static class TaskAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Run run;
+        private final int index;
+
+        TaskAction(Run run, int index) {
+            this.run = run;
+            this.index = index;
+        }
+
+        @Override
+        protected void compute() {
+            run.runFrom(index);
+        }
+    }
+
+    public static void main(String[] args) {
+        Digraph digraph = new Digraph();
+        Task[] tasks = new Task[8];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = new Task((long) i, "task" + i, 0);
+            digraph.addTask(tasks[i]);
+        }
+        //0 -> 1 -> 3 -> 7, 0 -> 2 -> 4/5/6 -> 7
+        digraph.addEdge(tasks[1], tasks[0]);
+        digraph.addEdge(tasks[2], tasks[0]);
+        digraph.addEdge(tasks[3], tasks[1]);
+        for (int i = 4; i <= 6; i++) {
+            digraph.addEdge(tasks[i], tasks[2]);
+            digraph.addEdge(tasks[7], tasks[i]);
+        }
+        digraph.addEdge(tasks[7], tasks[3]);
+        new WorkStealingScheduler().schedule(digraph);
+    }
+}
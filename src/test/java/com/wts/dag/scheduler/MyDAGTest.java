@@ -0,0 +1,146 @@
+package com.wts.dag.scheduler;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MyDAGTest {
+
+    private static final int DEEP_CHAIN_SIZE = 1_000_000;
+
+    @Test
+    public void dfsSortsDeepChainWithoutStackOverflow() {
+        MyDAG.Vertex[] chain = new MyDAG.Vertex[DEEP_CHAIN_SIZE];
+        MyDAG.Graph graph = chain(chain);
+        assertChainOrder(chain, graph.dfsTopologicalSort());
+    }
+
+    @Test
+    public void bfsSortsDeepChain() {
+        MyDAG.Vertex[] chain = new MyDAG.Vertex[DEEP_CHAIN_SIZE];
+        MyDAG.Graph graph = chain(chain);
+        assertChainOrder(chain, graph.bfsTopologicalSort());
+    }
+
+    @Test
+    public void sortsRespectEveryEdge() {
+        MyDAG.Graph graph = new MyDAG.Graph();
+        MyDAG.Vertex a = new MyDAG.Vertex("a");
+        MyDAG.Vertex b = new MyDAG.Vertex("b");
+        MyDAG.Vertex c = new MyDAG.Vertex("c");
+        MyDAG.Vertex d = new MyDAG.Vertex("d");
+        graph.addEdge(a, b);
+        graph.addEdge(a, c);
+        graph.addEdge(b, d);
+        graph.addEdge(c, d);
+        assertTopological(graph.dfsTopologicalSort(), a, b, c, d);
+        assertTopological(graph.bfsTopologicalSort(), a, b, c, d);
+    }
+
+    @Test
+    public void dfsReportsCycleVertices() {
+        MyDAG.Vertex[] cycle = new MyDAG.Vertex[3];
+        MyDAG.Graph graph = cycleWithTail(cycle);
+        try {
+            graph.dfsTopologicalSort();
+            fail("cycle not detected");
+        } catch (MyDAG.CycleException e) {
+            assertCycle(cycle, e.getVertices());
+        }
+    }
+
+    @Test
+    public void bfsReportsCycleVertices() {
+        MyDAG.Vertex[] cycle = new MyDAG.Vertex[3];
+        MyDAG.Graph graph = cycleWithTail(cycle);
+        try {
+            graph.bfsTopologicalSort();
+            fail("cycle not detected");
+        } catch (MyDAG.CycleException e) {
+            assertCycle(cycle, e.getVertices());
+        }
+    }
+
+    @Test
+    public void onlineCycleDetectionRejectsClosingEdge() {
+        MyDAG.Graph graph = new MyDAG.Graph(true);
+        MyDAG.Vertex a = new MyDAG.Vertex("a");
+        MyDAG.Vertex b = new MyDAG.Vertex("b");
+        MyDAG.Vertex c = new MyDAG.Vertex("c");
+        graph.addEdge(a, b);
+        graph.addEdge(b, c);
+        try {
+            graph.addEdge(c, a);
+            fail("cycle not detected");
+        } catch (IllegalArgumentException e) {
+            assertEquals(3, graph.bfsTopologicalSort().size());
+        }
+    }
+
+    private static MyDAG.Graph chain(MyDAG.Vertex[] chain) {
+        MyDAG.Graph graph = new MyDAG.Graph();
+        for (int i = 0; i < chain.length; i++) {
+            chain[i] = new MyDAG.Vertex(String.valueOf(i));
+            if (i > 0) {
+                graph.addEdge(chain[i - 1], chain[i]);
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * tail -> cycle[0] -> cycle[1] -> cycle[2] -> cycle[0]
+     */
+    private static MyDAG.Graph cycleWithTail(MyDAG.Vertex[] cycle) {
+        MyDAG.Graph graph = new MyDAG.Graph();
+        for (int i = 0; i < cycle.length; i++) {
+            cycle[i] = new MyDAG.Vertex("c" + i);
+        }
+        graph.addEdge(new MyDAG.Vertex("tail"), cycle[0]);
+        for (int i = 0; i < cycle.length; i++) {
+            graph.addEdge(cycle[i], cycle[(i + 1) % cycle.length]);
+        }
+        return graph;
+    }
+
+    private static void assertChainOrder(MyDAG.Vertex[] chain, List<MyDAG.Vertex> order) {
+        assertEquals(chain.length, order.size());
+        for (int i = 0; i < chain.length; i++) {
+            assertEquals(chain[i], order.get(i));
+        }
+    }
+
+    private static void assertTopological(List<MyDAG.Vertex> order, MyDAG.Vertex a, MyDAG.Vertex b,
+                                          MyDAG.Vertex c, MyDAG.Vertex d) {
+        Map<MyDAG.Vertex, Integer> positions = new HashMap<>();
+        for (int i = 0; i < order.size(); i++) {
+            positions.put(order.get(i), i);
+        }
+        assertEquals(4, positions.size());
+        assertTrue(positions.get(a) < positions.get(b));
+        assertTrue(positions.get(a) < positions.get(c));
+        assertTrue(positions.get(b) < positions.get(d));
+        assertTrue(positions.get(c) < positions.get(d));
+    }
+
+    private static void assertCycle(MyDAG.Vertex[] cycle, List<MyDAG.Vertex> reported) {
+        List<MyDAG.Vertex> expected = Arrays.asList(cycle);
+        assertEquals(cycle.length, reported.size());
+        assertEquals(new HashSet<>(expected), new HashSet<>(reported));
+        assertFalse(reported.contains(new MyDAG.Vertex("tail")));
+        //报出的顶点按环上的顺序排列，每个顶点的下一个是它的后继
+        for (int i = 0; i < reported.size(); i++) {
+            int index = expected.indexOf(reported.get(i));
+            assertEquals(cycle[(index + 1) % cycle.length], reported.get((i + 1) % reported.size()));
+        }
+    }
+}